@@ -0,0 +1,183 @@
+package com.example.pegasusimagemanager;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Cache da presença do boxFront.png de cada jogo. Os jogos da lista já vêm
+ * do índice com a imagem conferida; este cache só atende as novas
+ * conferências pedidas com request() depois que outra tela gravou a
+ * imagem (GameAdapter.refreshImage). Os pedidos feitos no mesmo quadro
+ * viram um único lote, resolvido numa thread de apoio com uma listagem da
+ * pasta "media" por coleção e uma listagem por pasta de jogo.
+ */
+public class BoxFrontCache {
+    private static final String BOX_FRONT_FILE = "boxFront.png";
+
+    private final Context context;
+    private final Handler mainHandler;
+    private final ExecutorService executor;
+    private final Listener listener;
+
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Set<String> inFlight = new HashSet<>();
+    private final List<Game> pending = new ArrayList<>();
+    // Muda a cada clear(); lotes iniciados antes dele são descartados ao voltar
+    private int generation;
+
+    /**
+     * Avisado na thread principal quando um lote é resolvido
+     */
+    public interface Listener {
+        void onBoxFrontsResolved(Set<String> keys);
+    }
+
+    /**
+     * Resultado de um jogo: IDs de documento da pasta e da imagem, ou null
+     * se não existem, e a data de modificação da imagem
+     */
+    public static class Entry {
+        private final String directoryDocumentId;
+        private final String imageDocumentId;
+        private final long imageLastModified;
+
+        Entry(String directoryDocumentId, String imageDocumentId, long imageLastModified) {
+            this.directoryDocumentId = directoryDocumentId;
+            this.imageDocumentId = imageDocumentId;
+            this.imageLastModified = imageLastModified;
+        }
+
+        public String getDirectoryDocumentId() {
+            return directoryDocumentId;
+        }
+
+        public String getImageDocumentId() {
+            return imageDocumentId;
+        }
+
+        public long getImageLastModified() {
+            return imageLastModified;
+        }
+    }
+
+    public BoxFrontCache(Context context, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.executor = Executors.newSingleThreadExecutor();
+        this.listener = listener;
+    }
+
+    /**
+     * @return Chave do jogo no cache: o documento de origem, ou coleção + nome
+     */
+    public static String keyOf(Game game) {
+        if (game.getSourceDocumentId() != null) {
+            return game.getSourceDocumentId();
+        }
+        return game.getCollectionUri() + "/" + game.getName();
+    }
+
+    /**
+     * @return Resultado já conhecido ou null se o jogo ainda não foi resolvido
+     */
+    public Entry get(Game game) {
+        return entries.get(keyOf(game));
+    }
+
+    /**
+     * Esquece o resultado de um jogo; o próximo bind pede uma nova leitura
+     */
+    public void invalidate(Game game) {
+        entries.remove(keyOf(game));
+    }
+
+    public void clear() {
+        generation++;
+        entries.clear();
+        inFlight.clear();
+        pending.clear();
+    }
+
+    /**
+     * Pede a resolução de um jogo. Pedidos repetidos são ignorados.
+     */
+    public void request(Game game) {
+        String key = keyOf(game);
+        if (game.getCollectionUri() == null || entries.containsKey(key) || !inFlight.add(key)) {
+            return;
+        }
+        if (pending.isEmpty()) {
+            mainHandler.post(this::flush);
+        }
+        pending.add(game);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void flush() {
+        List<Game> batch = new ArrayList<>(pending);
+        pending.clear();
+        if (!batch.isEmpty()) {
+            int batchGeneration = generation;
+            executor.execute(() -> resolve(batch, batchGeneration));
+        }
+    }
+
+    private void resolve(List<Game> batch, int batchGeneration) {
+        Map<Uri, MediaTreeIndex> indexes = new HashMap<>();
+        Map<String, Entry> results = new HashMap<>();
+
+        for (Game game : batch) {
+            Uri directoryUri = game.getGameDirectoryUri();
+            if (directoryUri == null) {
+                // Uma listagem da pasta "media" atende todos os jogos da coleção no lote
+                MediaTreeIndex index = indexes.get(game.getCollectionUri());
+                if (index == null) {
+                    index = new MediaTreeIndex(context, game.getCollectionUri());
+                    index.load(false);
+                    indexes.put(game.getCollectionUri(), index);
+                }
+                DocumentScanner.Entry directory = index.findGameDirectoryEntry(game.getName());
+                directoryUri = directory != null ? directory.getUri(game.getCollectionUri()) : null;
+            }
+
+            String directoryId = null;
+            String imageId = null;
+            long imageLastModified = 0;
+            if (directoryUri != null) {
+                directoryId = DocumentsContract.getDocumentId(directoryUri);
+                DocumentScanner.Entry image = DocumentScanner.findFile(
+                        DocumentScanner.listChildren(context, directoryUri), BOX_FRONT_FILE);
+                if (image != null) {
+                    imageId = image.getDocumentId();
+                    imageLastModified = image.getLastModified();
+                }
+            }
+            results.put(keyOf(game), new Entry(directoryId, imageId, imageLastModified));
+        }
+
+        mainHandler.post(() -> {
+            if (batchGeneration != generation) {
+                // O cache foi limpo enquanto o lote era lido: o resultado é de antes
+                return;
+            }
+            entries.putAll(results);
+            inFlight.removeAll(results.keySet());
+            listener.onBoxFrontsResolved(results.keySet());
+        });
+    }
+}
@@ -16,21 +16,115 @@ import com.google.android.material.card.MaterialCardView;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
+/**
+ * Grade de capas lida em páginas da SteamGridDB. Quando a rolagem chega
+ * perto do fim, a próxima página é pedida e acrescentada com um insert de
+ * intervalo. Só as páginas perto da posição exibida ficam na memória: as
+ * distantes viram marcadores e são pedidas de novo (em geral ao cache de
+ * respostas) se a rolagem voltar.
+ */
 public class CoverAdapter extends RecyclerView.Adapter<CoverAdapter.ViewHolder> {
-    private List<SteamGridDbResponse.GridResult> covers;
+    // Páginas mantidas antes e depois da página exibida
+    private static final int KEEP_PAGES_AROUND = 2;
+    // A próxima página é pedida quando faltam estas capas para o fim
+    private static final int PREFETCH_DISTANCE = 8;
+
+    private final int pageSize;
+    // Capas de cada página; null quando a página foi descartada
+    private final List<SteamGridDbResponse.GridResult[]> pages = new ArrayList<>();
+    private final Set<Integer> restoring = new HashSet<>();
+    private int itemCount;
+    private boolean hasMore = true;
+    private boolean loadingNext;
+    private int currentPage;
+
     private OnCoverClickListener listener;
+    private PageLoader pageLoader;
     private Context context;
 
     public interface OnCoverClickListener {
         void onCoverClick(SteamGridDbResponse.GridResult cover);
     }
 
-    public CoverAdapter(Context context, List<SteamGridDbResponse.GridResult> covers, OnCoverClickListener listener) {
+    /**
+     * Busca uma página de capas; a resposta volta por onPageLoaded() ou
+     * onPageFailed(), na thread principal
+     */
+    public interface PageLoader {
+        void loadPage(int page);
+    }
+
+    /**
+     * @param pageSize Capas por página pedidas à API
+     */
+    public CoverAdapter(Context context, int pageSize, OnCoverClickListener listener, PageLoader pageLoader) {
         this.context = context;
-        this.covers = covers;
+        this.pageSize = pageSize;
         this.listener = listener;
+        this.pageLoader = pageLoader;
+    }
+
+    /**
+     * Recebe uma página: a próxima é acrescentada ao fim, uma descartada é
+     * reposta no lugar
+     * @param page Índice da página
+     * @param covers Capas da página
+     */
+    public void onPageLoaded(int page, List<SteamGridDbResponse.GridResult> covers) {
+        if (page == pages.size()) {
+            loadingNext = false;
+            hasMore = covers.size() >= pageSize;
+            if (covers.isEmpty()) {
+                return;
+            }
+            int start = itemCount;
+            pages.add(covers.toArray(new SteamGridDbResponse.GridResult[0]));
+            itemCount += covers.size();
+            notifyItemRangeInserted(start, covers.size());
+            evictDistantPages();
+        } else if (page < pages.size() && pages.get(page) == null) {
+            restoring.remove(page);
+            // O tamanho da página já está na lista: mantém as posições. Se a
+            // página voltou menor (cache expirado, capas removidas no
+            // servidor), as posições que sobram ficam null e viram marcadores
+            SteamGridDbResponse.GridResult[] restored = new SteamGridDbResponse.GridResult[pageLength(page)];
+            for (int i = 0; i < restored.length && i < covers.size(); i++) {
+                restored[i] = covers.get(i);
+            }
+            pages.set(page, restored);
+            notifyItemRangeChanged(page * pageSize, restored.length);
+        }
+    }
+
+    /**
+     * A página não veio; será pedida de novo no próximo bind que precisar dela
+     */
+    public void onPageFailed(int page) {
+        if (page == pages.size()) {
+            loadingNext = false;
+        } else {
+            restoring.remove(page);
+        }
+    }
+
+    private int pageLength(int page) {
+        return page < pages.size() - 1 ? pageSize : itemCount - page * pageSize;
+    }
+
+    /**
+     * Descarta as páginas longe da exibida, mantendo a contagem de posições
+     */
+    private void evictDistantPages() {
+        for (int page = 0; page < pages.size(); page++) {
+            if (Math.abs(page - currentPage) > KEEP_PAGES_AROUND && pages.get(page) != null) {
+                pages.set(page, null);
+            }
+        }
     }
 
     @NonNull
@@ -43,13 +137,54 @@ public class CoverAdapter extends RecyclerView.Adapter<CoverAdapter.ViewHolder>
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        SteamGridDbResponse.GridResult cover = covers.get(position);
-        
+        int page = position / pageSize;
+        if (page != currentPage) {
+            currentPage = page;
+            evictDistantPages();
+        }
+
+        // Perto do fim: pede a próxima página antes de a rolagem chegar lá
+        if (hasMore && !loadingNext && position >= itemCount - PREFETCH_DISTANCE) {
+            loadingNext = true;
+            pageLoader.loadPage(pages.size());
+        }
+
+        SteamGridDbResponse.GridResult[] covers = pages.get(page);
+        if (covers == null) {
+            if (restoring.add(page)) {
+                pageLoader.loadPage(page);
+            }
+            bindPlaceholder(holder);
+            return;
+        }
+        SteamGridDbResponse.GridResult cover = covers[position % pageSize];
+        if (cover == null) {
+            bindPlaceholder(holder);
+            return;
+        }
+        bind(holder, cover);
+    }
+
+    /**
+     * Célula de uma página descartada, enquanto ela é lida de novo, ou de uma
+     * posição que a página relida não tem mais
+     */
+    private void bindPlaceholder(ViewHolder holder) {
+        Glide.with(context).clear(holder.imgCover);
+        Glide.with(context).clear(holder.imgAuthorAvatar);
+        holder.chipGroupTags.removeAllViews();
+        holder.tvAuthorName.setText("");
+        holder.cardCover.setOnClickListener(null);
+        holder.btnSelect.setOnClickListener(null);
+        holder.btnSelect.setEnabled(false);
+    }
+
+    private void bind(ViewHolder holder, SteamGridDbResponse.GridResult cover) {
         // Carregar thumbnail da capa
         Glide.with(context)
                 .load(cover.getThumb())
                 .into(holder.imgCover);
-        
+
         // Configurar tags se existirem
         holder.chipGroupTags.removeAllViews();
         if (cover.getTags() != null && !cover.getTags().isEmpty()) {
@@ -60,7 +195,7 @@ public class CoverAdapter extends RecyclerView.Adapter<CoverAdapter.ViewHolder>
                 holder.chipGroupTags.addView(chip);
             }
         }
-        
+
         // Configurar autor se existir
         if (cover.getAuthor() != null) {
             holder.tvAuthorName.setText(cover.getAuthor().getName());
@@ -69,19 +204,23 @@ public class CoverAdapter extends RecyclerView.Adapter<CoverAdapter.ViewHolder>
                         .load(cover.getAuthor().getAvatar())
                         .circleCrop()
                         .into(holder.imgAuthorAvatar);
+            } else {
+                Glide.with(context).clear(holder.imgAuthorAvatar);
             }
         } else {
             holder.tvAuthorName.setText("Autor desconhecido");
+            Glide.with(context).clear(holder.imgAuthorAvatar);
         }
-        
+
         // Click listeners
         holder.cardCover.setOnClickListener(v -> {
             if (listener != null) {
                 listener.onCoverClick(cover);
             }
         });
-        
+
         // Click listener para botão select também
+        holder.btnSelect.setEnabled(true);
         holder.btnSelect.setOnClickListener(v -> {
             if (listener != null) {
                 listener.onCoverClick(cover);
@@ -90,13 +229,15 @@ public class CoverAdapter extends RecyclerView.Adapter<CoverAdapter.ViewHolder>
     }
 
     @Override
-    public int getItemCount() {
-        return covers != null ? covers.size() : 0;
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        // Libera os bitmaps das células fora da tela
+        Glide.with(context).clear(holder.imgCover);
+        Glide.with(context).clear(holder.imgAuthorAvatar);
     }
 
-    public void updateCovers(List<SteamGridDbResponse.GridResult> newCovers) {
-        this.covers = newCovers;
-        notifyDataSetChanged();
+    @Override
+    public int getItemCount() {
+        return itemCount;
     }
 
     public static class ViewHolder extends RecyclerView.ViewHolder {
@@ -117,4 +258,4 @@ public class CoverAdapter extends RecyclerView.Adapter<CoverAdapter.ViewHolder>
             btnSelect = itemView.findViewById(R.id.btnSelect);
         }
     }
-}
\ No newline at end of file
+}
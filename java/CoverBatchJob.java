@@ -0,0 +1,487 @@
+package com.example.pegasusimagemanager;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+
+import androidx.documentfile.provider.DocumentFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Response;
+
+/**
+ * Busca em lote as capas que faltam na biblioteca. Cada jogo sem boxFront.png
+ * passa por busca, escolha do melhor resultado, lista de imagens, download e
+ * gravação na pasta de mídia; vários jogos ficam em etapas diferentes ao
+ * mesmo tempo, até MAX_CONCURRENT_GAMES. Além da capa, o lote traz os
+ * outros tipos de mídia configurados (SteamGridDbApi.getMediaAssets) que o
+ * jogo ainda não tem: todos saem do mesmo ID, são pedidos e baixados juntos
+ * e gravados na mesma pasta. Jogos com ID guardado no GameIdStore pulam a
+ * busca por nome. Um jogo que falha é registrado e o lote segue com o
+ * próximo.
+ * O estado do lote só muda na thread principal, onde o Listener é avisado.
+ * O lote não pertence à Activity: continua numa rotação de tela, e a nova
+ * Activity o retoma com getCurrent() e setListener().
+ */
+public class CoverBatchJob {
+    // Jogos em andamento ao mesmo tempo (cada um numa etapa do pipeline)
+    private static final int MAX_CONCURRENT_GAMES = 3;
+    // Com mais chamadas que isso esperando no limitador da API ou por uma
+    // nova tentativa, o lote não começa jogos novos até a fila baixar. Fica
+    // abaixo de MAX_CONCURRENT_GAMES: dois jogos parados (ex.: depois de um
+    // 429) já bastam para segurar o próximo
+    private static final int MAX_QUEUED_REQUESTS = 2;
+    private static final long BACKPRESSURE_RETRY_MILLIS = 500;
+
+    /**
+     * Avisado na thread principal
+     */
+    public interface Listener {
+        void onBatchProgress(Progress progress);
+        void onBatchFinished(Progress progress, List<Outcome> outcomes, boolean cancelled);
+    }
+
+    /**
+     * Resultado de um jogo do lote
+     */
+    public static class Outcome {
+        public final String gameName;
+        public final boolean saved;
+        // Jogo escolhido com os arquivos gravados, ou motivo da falha
+        public final String detail;
+
+        Outcome(String gameName, boolean saved, String detail) {
+            this.gameName = gameName;
+            this.saved = saved;
+            this.detail = detail;
+        }
+    }
+
+    /**
+     * Andamento do lote
+     */
+    public static class Progress {
+        public int total;
+        public int finished;
+        public int saved;
+        public int failed;
+        // Jogos concluídos por minuto desde o início
+        public double gamesPerMinute;
+    }
+
+    private final Context context;
+    // Lote em andamento, ou terminado com o resultado ainda não entregue
+    private static CoverBatchJob current;
+
+    private final Uri rootUri;
+    // null enquanto nenhuma Activity acompanha o lote
+    private Listener listener;
+    private final LibraryDatabase database;
+    private final SteamGridDbApi api;
+    private final GameIdStore gameIdStore;
+    private final Set<MediaAsset> assets;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Leitura do índice e gravações no armazenamento, uma de cada vez
+    private final ExecutorService ioExecutor = Executors.newSingleThreadExecutor();
+    // Pasta "media" de cada coleção, listada uma vez por lote; só a thread de gravação usa
+    private final Map<String, MediaTreeIndex> mediaIndexes = new HashMap<>();
+
+    private final Progress progress = new Progress();
+    private final List<Outcome> outcomes = new ArrayList<>();
+    private List<LibraryDatabase.ListedGame> games = new ArrayList<>();
+    private int nextGame;
+    private int active;
+    private long startedAt;
+    private volatile boolean cancelled;
+    private boolean finished;
+    private boolean fillScheduled;
+
+    /**
+     * @return Lote iniciado por uma Activity anterior ou null; só na thread principal
+     */
+    public static CoverBatchJob getCurrent() {
+        return current;
+    }
+
+    public CoverBatchJob(Context context, Uri rootUri, Listener listener) {
+        this.context = context.getApplicationContext();
+        this.rootUri = rootUri;
+        this.listener = listener;
+        this.database = LibraryDatabase.getInstance(context);
+        this.api = new SteamGridDbApi(context);
+        this.gameIdStore = GameIdStore.getInstance(context);
+        this.assets = api.getMediaAssets();
+    }
+    
+    /**
+     * Estado de um jogo entre as etapas de busca das imagens, download e gravação
+     */
+    private static class GameTask {
+        final LibraryDatabase.ListedGame game;
+        final SteamGridDbResponse.GameResult match;
+        // O jogo veio do GameIdStore, não da busca
+        final boolean stored;
+        // Arquivos gravados e erros por tipo; só a thread de gravação escreve
+        final Map<MediaAsset, DocumentFile> written = new EnumMap<>(MediaAsset.class);
+        final Map<MediaAsset, String> errors = Collections.synchronizedMap(new EnumMap<>(MediaAsset.class));
+        final AtomicInteger pendingDownloads = new AtomicInteger();
+        // Vem do índice ou é criada na primeira gravação, na thread de gravação
+        DocumentFile directory;
+
+        GameTask(LibraryDatabase.ListedGame game, SteamGridDbResponse.GameResult match, boolean stored) {
+            this.game = game;
+            this.match = match;
+            this.stored = stored;
+        }
+    }
+
+    /**
+     * Lê os jogos sem capa do índice e começa o lote
+     */
+    public void start() {
+        current = this;
+        startedAt = SystemClock.elapsedRealtime();
+        ioExecutor.execute(() -> {
+            List<LibraryDatabase.ListedGame> missing = database.getListedGamesMissingCover(rootUri.toString());
+            mainHandler.post(() -> {
+                if (finished) {
+                    return;
+                }
+                games = missing;
+                progress.total = missing.size();
+                if (listener != null) {
+                    listener.onBatchProgress(progress);
+                }
+                fillPipeline();
+            });
+        });
+    }
+
+    /**
+     * Troca quem acompanha o lote, por exemplo a Activity recriada depois de
+     * uma rotação. O novo Listener recebe logo o andamento atual, ou o
+     * resultado se o lote terminou enquanto ninguém acompanhava.
+     * @param listener Novo Listener ou null para só desligar o anterior
+     */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+        if (listener == null) {
+            return;
+        }
+        if (finished) {
+            if (current == this) {
+                current = null;
+            }
+            listener.onBatchFinished(progress, outcomes, cancelled);
+        } else {
+            listener.onBatchProgress(progress);
+        }
+    }
+
+    /**
+     * Para de iniciar jogos e desliga o Listener: os jogos em andamento
+     * terminam a etapa atual sem avisar mais ninguém
+     */
+    public void cancel() {
+        cancelled = true;
+        listener = null;
+        if (current == this) {
+            current = null;
+        }
+        mainHandler.post(this::fillPipeline);
+    }
+
+    public Progress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return Resultado dos jogos já concluídos; só na thread principal
+     */
+    public List<Outcome> getOutcomes() {
+        return outcomes;
+    }
+
+    public boolean isRunning() {
+        return !finished;
+    }
+
+    private void fillPipeline() {
+        if (finished) {
+            return;
+        }
+        while (!cancelled && active < MAX_CONCURRENT_GAMES && nextGame < games.size()) {
+            if (SteamGridDbApi.getQueuedRequests() >= MAX_QUEUED_REQUESTS) {
+                // O limitador está atrasado (ex.: 429): confere de novo mais tarde
+                if (!fillScheduled) {
+                    fillScheduled = true;
+                    mainHandler.postDelayed(() -> {
+                        fillScheduled = false;
+                        fillPipeline();
+                    }, BACKPRESSURE_RETRY_MILLIS);
+                }
+                break;
+            }
+            active++;
+            processGame(games.get(nextGame++));
+        }
+        if (active == 0 && (cancelled || nextGame >= games.size())) {
+            finished = true;
+            ioExecutor.shutdown();
+            // Sem Listener, o resultado espera a próxima Activity em getCurrent()
+            if (listener != null) {
+                if (current == this) {
+                    current = null;
+                }
+                listener.onBatchFinished(progress, outcomes, cancelled);
+            }
+        }
+    }
+
+    private void processGame(LibraryDatabase.ListedGame game) {
+        // Com o jogo já escolhido pelo usuário para este nome, pula a busca
+        gameIdStore.lookup(game.name, mapping -> {
+            if (mapping == null) {
+                searchGame(game);
+            } else if (!cancelled) {
+                fetchAssets(game, mapping.toGameResult(), true);
+            } else {
+                finishGame(game, false, "cancelado");
+            }
+        });
+    }
+
+    private void searchGame(LibraryDatabase.ListedGame game) {
+        api.searchGames(game.name, new SteamGridDbApi.SearchCallback() {
+            @Override
+            public void onSuccess(List<SteamGridDbResponse.GameResult> results) {
+                SteamGridDbResponse.GameResult match = bestMatch(game.name, results);
+                if (match == null) {
+                    finishGame(game, false, "nenhum jogo encontrado");
+                } else if (!cancelled) {
+                    fetchAssets(game, match, false);
+                } else {
+                    finishGame(game, false, "cancelado");
+                }
+            }
+
+            @Override
+            public void onError(String error) {
+                finishGame(game, false, error);
+            }
+        });
+    }
+
+    /**
+     * Escolhe o resultado cujo nome normalizado é igual ao do jogo; sem
+     * nenhum igual, fica com o primeiro, que a busca já ordena por relevância
+     */
+    private static SteamGridDbResponse.GameResult bestMatch(String gameName,
+                                                           List<SteamGridDbResponse.GameResult> results) {
+        if (results.isEmpty()) {
+            return null;
+        }
+        SteamGridDbResponse.GameResult exact = SteamGridDbApi.findExactMatch(gameName, results);
+        return exact != null ? exact : results.get(0);
+    }
+
+    /**
+     * Vê quais tipos de mídia o jogo ainda não tem e pede as imagens de todos
+     * eles de uma vez. A capa sempre entra: o jogo está no lote por não ter
+     * uma. A pasta do jogo vem do índice, sem procurá-la em media/; só ela é
+     * listada, e só se existe.
+     */
+    private void fetchAssets(LibraryDatabase.ListedGame game, SteamGridDbResponse.GameResult match,
+                             boolean stored) {
+        GameTask task = new GameTask(game, match, stored);
+        ioExecutor.execute(() -> {
+            if (game.mediaDocumentId != null) {
+                task.directory = DocumentFile.fromTreeUri(context, DocumentsContract.buildDocumentUriUsingTree(
+                        Uri.parse(game.treeUri), game.mediaDocumentId));
+            }
+            Set<MediaAsset> missing = EnumSet.noneOf(MediaAsset.class);
+            List<DocumentScanner.Entry> existing = task.directory != null
+                    ? DocumentScanner.listChildren(context, task.directory.getUri())
+                    : Collections.emptyList();
+            for (MediaAsset asset : assets) {
+                if (asset == MediaAsset.BOX_FRONT
+                        || DocumentScanner.findFile(existing, asset.getFileName()) == null) {
+                    missing.add(asset);
+                }
+            }
+            api.getGameAssets(match.getId(), missing, (found, errors) -> downloadAll(task, found, errors));
+        });
+    }
+
+    private void downloadAll(GameTask task, Map<MediaAsset, List<SteamGridDbResponse.GridResult>> found,
+                             Map<MediaAsset, String> errors) {
+        if (cancelled) {
+            finishGame(task.game, false, "cancelado");
+            return;
+        }
+        List<SteamGridDbResponse.GridResult> covers = found.get(MediaAsset.BOX_FRONT);
+        if (task.stored && (covers == null || covers.isEmpty())) {
+            // O ID guardado não trouxe capa (errado, removido ou falhou): tenta pela busca
+            searchGame(task.game);
+            return;
+        }
+        task.errors.putAll(errors);
+        Map<MediaAsset, String> urls = new EnumMap<>(MediaAsset.class);
+        for (Map.Entry<MediaAsset, List<SteamGridDbResponse.GridResult>> entry : found.entrySet()) {
+            // A primeira imagem é a mais bem avaliada
+            List<SteamGridDbResponse.GridResult> images = entry.getValue();
+            if (!images.isEmpty() && images.get(0).getUrl() != null) {
+                urls.put(entry.getKey(), images.get(0).getUrl());
+            }
+        }
+        if (urls.isEmpty()) {
+            String error = task.errors.get(MediaAsset.BOX_FRONT);
+            finishGame(task.game, false, error != null ? error : "nenhuma capa para " + task.match.getName());
+            return;
+        }
+
+        // Os downloads vêm da CDN, fora do limitador: saem todos juntos
+        task.pendingDownloads.set(urls.size());
+        for (Map.Entry<MediaAsset, String> entry : urls.entrySet()) {
+            download(task, entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void download(GameTask task, MediaAsset asset, String url) {
+        api.downloadImage(url, new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                task.errors.put(asset, "erro no download: " + e.getMessage());
+                downloadDone(task);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                if (!response.isSuccessful()) {
+                    response.close();
+                    task.errors.put(asset, "erro no download: " + response.code());
+                    downloadDone(task);
+                    return;
+                }
+                // A gravação via SAF fica na sua própria etapa, liberando a
+                // thread de rede para o próximo download
+                ioExecutor.execute(() -> {
+                    save(task, asset, response);
+                    downloadDone(task);
+                });
+            }
+        });
+    }
+
+    /**
+     * Grava uma imagem na pasta do jogo; sem pasta no índice, ela é procurada
+     * ou criada na primeira gravação e reaproveitada nas seguintes
+     */
+    private void save(GameTask task, MediaAsset asset, Response response) {
+        try (Response closeable = response; InputStream body = closeable.body().byteStream()) {
+            if (task.directory == null) {
+                task.directory = getOrCreateGameDirectory(task.game);
+                if (task.directory == null) {
+                    task.errors.put(asset, "não foi possível criar a pasta do jogo");
+                    return;
+                }
+            }
+            DocumentFile image = FileHelper.writeMediaImage(context, task.directory, asset.getFileName(), body);
+            if (image == null) {
+                task.errors.put(asset, "não foi possível gravar " + asset.getFileName());
+                return;
+            }
+            task.written.put(asset, image);
+        } catch (Exception e) {
+            task.errors.put(asset, "erro ao gravar: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Procura a pasta do jogo na listagem de media/ da coleção, feita uma vez
+     * por lote, e a cria se não existe
+     */
+    private DocumentFile getOrCreateGameDirectory(LibraryDatabase.ListedGame game) {
+        MediaTreeIndex mediaIndex = mediaIndexes.get(game.treeUri);
+        if (mediaIndex == null) {
+            mediaIndex = new MediaTreeIndex(context, Uri.parse(game.treeUri));
+            mediaIndex.load(false);
+            mediaIndexes.put(game.treeUri, mediaIndex);
+        }
+        DocumentFile directory = mediaIndex.findGameDirectory(game.name);
+        if (directory != null) {
+            return directory;
+        }
+        // Criar media/ ou a pasta do jogo gera uma notificação do próprio app
+        LibraryWatcher.noteOwnWrite(Uri.parse(game.treeUri));
+        return mediaIndex.getOrCreateGameDirectory(game.name);
+    }
+
+    /**
+     * Quando o último download do jogo termina, registra a capa no índice e
+     * encerra o jogo. Roda na thread de gravação, depois de todas as gravações.
+     */
+    private void downloadDone(GameTask task) {
+        if (task.pendingDownloads.decrementAndGet() > 0) {
+            return;
+        }
+        ioExecutor.execute(() -> {
+            DocumentFile boxFront = task.written.get(MediaAsset.BOX_FRONT);
+            if (boxFront != null) {
+                database.updateGameMedia(task.game.treeUri, task.game.sourceDocumentId,
+                        DocumentsContract.getDocumentId(task.directory.getUri()),
+                        DocumentsContract.getDocumentId(boxFront.getUri()), FileHelper.writtenLastModified(boxFront));
+            }
+            StringBuilder files = new StringBuilder();
+            for (MediaAsset asset : task.written.keySet()) {
+                files.append(files.length() > 0 ? ", " : "").append(asset.getFileName());
+            }
+            if (boxFront != null) {
+                finishGame(task.game, true, task.match.getName() + " (" + files + ")");
+                return;
+            }
+            // Sem capa o jogo conta como falha, mesmo com outras mídias gravadas
+            String error = task.errors.get(MediaAsset.BOX_FRONT);
+            String detail = error != null ? error : "nenhuma capa para " + task.match.getName();
+            finishGame(task.game, false, files.length() > 0 ? detail + " (gravados: " + files + ")" : detail);
+        });
+    }
+
+    private void finishGame(LibraryDatabase.ListedGame game, boolean saved, String detail) {
+        mainHandler.post(() -> {
+            active--;
+            outcomes.add(new Outcome(game.name, saved, detail));
+            progress.finished++;
+            if (saved) {
+                progress.saved++;
+            } else {
+                progress.failed++;
+            }
+            double minutes = (SystemClock.elapsedRealtime() - startedAt) / 60000.0;
+            progress.gamesPerMinute = minutes > 0 ? progress.finished / minutes : 0;
+            // Depois de cancel() o lote só termina os jogos, em silêncio
+            if (listener != null && !cancelled) {
+                listener.onBatchProgress(progress);
+            }
+            fillPipeline();
+        });
+    }
+}
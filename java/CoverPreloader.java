@@ -0,0 +1,59 @@
+package com.example.pegasusimagemanager;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+/**
+ * Pré-carrega as miniaturas das capas à frente da rolagem: quando a linha
+ * aparece, a miniatura já está no cache de memória do Glide. Segue a direção
+ * da última rolagem e só pede as posições que a janela anterior não cobria.
+ */
+public class CoverPreloader extends RecyclerView.OnScrollListener {
+    // Linhas pré-carregadas além da última visível
+    private static final int MAX_PRELOAD = 10;
+
+    private final GameAdapter adapter;
+    private boolean forward = true;
+    // Última janela pré-carregada (vazia no início)
+    private int lastStart;
+    private int lastEnd = -1;
+
+    public CoverPreloader(GameAdapter adapter) {
+        this.adapter = adapter;
+    }
+
+    @Override
+    public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+        if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager)) {
+            return;
+        }
+        LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+        int first = layoutManager.findFirstVisibleItemPosition();
+        int last = layoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) {
+            return;
+        }
+        if (dy != 0) {
+            forward = dy > 0;
+        }
+
+        int start;
+        int end;
+        if (forward) {
+            start = last + 1;
+            end = Math.min(last + MAX_PRELOAD, adapter.getItemCount() - 1);
+        } else {
+            start = Math.max(0, first - MAX_PRELOAD);
+            end = first - 1;
+        }
+
+        for (int position = start; position <= end; position++) {
+            if (position < lastStart || position > lastEnd) {
+                adapter.preloadCover(position);
+            }
+        }
+        lastStart = start;
+        lastEnd = end;
+    }
+}
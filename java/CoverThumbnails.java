@@ -0,0 +1,60 @@
+package com.example.pegasusimagemanager;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.signature.ObjectKey;
+
+/**
+ * Miniaturas das capas da lista principal. O boxFront.png original (em
+ * geral 600x900 ou maior) é lido e reduzido uma vez só: o Glide guarda no
+ * seu cache em disco, dentro da pasta privada do app, apenas a miniatura já
+ * no tamanho do cartão. A chave do cache é a URI do documento mais a data de
+ * modificação do arquivo, então trocar a capa gera uma miniatura nova.
+ * O bind e o pré-carregamento usam a mesma requisição, para que as chaves
+ * coincidam.
+ */
+public class CoverThumbnails {
+    // Tamanho do cartão da capa em item_game.xml
+    private static final int WIDTH_DP = 80;
+    private static final int HEIGHT_DP = 120;
+
+    private final Context context;
+    private final int width;
+    private final int height;
+
+    public CoverThumbnails(Context context) {
+        this.context = context;
+        float density = context.getResources().getDisplayMetrics().density;
+        this.width = Math.round(WIDTH_DP * density);
+        this.height = Math.round(HEIGHT_DP * density);
+    }
+
+    /**
+     * @param game Jogo com boxFront.png
+     * @return Requisição da miniatura, pronta para into() ou preload()
+     */
+    public RequestBuilder<Drawable> request(Game game) {
+        return Glide.with(context)
+                .load(game.getImageUri())
+                .override(width, height)
+                .centerCrop()
+                // A capa não tem transparência: metade da memória por pixel
+                .format(DecodeFormat.PREFER_RGB_565)
+                // Só a miniatura vai para o disco, nunca o original
+                .diskCacheStrategy(DiskCacheStrategy.RESOURCE)
+                .signature(new ObjectKey(game.getImageLastModified()));
+    }
+
+    /**
+     * Decodifica a miniatura para o cache de memória antes da linha aparecer
+     * @param game Jogo com boxFront.png
+     */
+    public void preload(Game game) {
+        request(game).preload(width, height);
+    }
+}
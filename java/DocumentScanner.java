@@ -0,0 +1,199 @@
+package com.example.pegasusimagemanager;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import androidx.documentfile.provider.DocumentFile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Lista diretórios SAF com uma única consulta ao ContentResolver por diretório.
+ * DocumentFile.listFiles() seguido de isFile()/getName() faz uma consulta por
+ * filho; aqui todos os metadados vêm na mesma projeção.
+ */
+public class DocumentScanner {
+    private static final String TAG = "DocumentScanner";
+
+    private static final String[] PROJECTION = {
+            DocumentsContract.Document.COLUMN_DOCUMENT_ID,
+            DocumentsContract.Document.COLUMN_DISPLAY_NAME,
+            DocumentsContract.Document.COLUMN_MIME_TYPE,
+            DocumentsContract.Document.COLUMN_SIZE,
+            DocumentsContract.Document.COLUMN_LAST_MODIFIED
+    };
+
+    /**
+     * Entrada leve de um diretório, sem referência a Context nem Uri
+     */
+    public static class Entry {
+        private final String documentId;
+        private final String name;
+        private final String mimeType;
+        private final long size;
+        private final long lastModified;
+
+        public Entry(String documentId, String name, String mimeType, long size, long lastModified) {
+            this.documentId = documentId;
+            this.name = name;
+            this.mimeType = mimeType;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        public String getDocumentId() {
+            return documentId;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getMimeType() {
+            return mimeType;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        public boolean isDirectory() {
+            return DocumentsContract.Document.MIME_TYPE_DIR.equals(mimeType);
+        }
+
+        public boolean isFile() {
+            return !isDirectory() && mimeType != null && !mimeType.isEmpty();
+        }
+
+        /**
+         * Monta a URI do documento dentro da árvore autorizada
+         * @param treeUri URI da árvore (ou de qualquer documento dentro dela)
+         * @return URI do documento
+         */
+        public Uri getUri(Uri treeUri) {
+            return DocumentsContract.buildDocumentUriUsingTree(treeUri, documentId);
+        }
+
+        /**
+         * Cria um DocumentFile para a entrada sem fazer novas consultas
+         * @param context Contexto da aplicação
+         * @param treeUri URI da árvore
+         * @return DocumentFile do documento
+         */
+        public DocumentFile toDocumentFile(Context context, Uri treeUri) {
+            return DocumentFile.fromTreeUri(context, getUri(treeUri));
+        }
+    }
+
+    /**
+     * Obtém o ID do documento referenciado por uma URI de árvore ou de documento
+     * @param context Contexto da aplicação
+     * @param uri URI da árvore ou de um documento dentro dela
+     * @return ID do documento
+     */
+    public static String getDocumentId(Context context, Uri uri) {
+        if (DocumentsContract.isDocumentUri(context, uri)) {
+            return DocumentsContract.getDocumentId(uri);
+        }
+        return DocumentsContract.getTreeDocumentId(uri);
+    }
+
+    /**
+     * Lista os filhos de um diretório
+     * @param context Contexto da aplicação
+     * @param directoryUri URI da árvore ou de um diretório dentro dela
+     * @return Entradas do diretório (vazia se não puder ser lido)
+     */
+    public static List<Entry> listChildren(Context context, Uri directoryUri) {
+        return listChildren(context, directoryUri, getDocumentId(context, directoryUri));
+    }
+
+    /**
+     * Lista os filhos de um diretório com uma única consulta
+     * @param context Contexto da aplicação
+     * @param treeUri URI da árvore autorizada
+     * @param parentDocumentId ID do diretório a listar
+     * @return Entradas do diretório (vazia se não puder ser lido)
+     */
+    public static List<Entry> listChildren(Context context, Uri treeUri, String parentDocumentId) {
+        Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, parentDocumentId);
+
+        try (Cursor cursor = context.getContentResolver().query(childrenUri, PROJECTION, null, null, null)) {
+            if (cursor == null) {
+                return Collections.emptyList();
+            }
+
+            List<Entry> entries = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                entries.add(new Entry(
+                        cursor.getString(0),
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.isNull(3) ? 0 : cursor.getLong(3),
+                        cursor.isNull(4) ? 0 : cursor.getLong(4)));
+            }
+            return entries;
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao listar diretório: " + e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Procura um arquivo pelo nome
+     * @param entries Entradas de um diretório
+     * @param name Nome exato do arquivo
+     * @return Entrada do arquivo ou null se não encontrado
+     */
+    public static Entry findFile(List<Entry> entries, String name) {
+        for (Entry entry : entries) {
+            if (entry.isFile() && name.equals(entry.getName())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Procura um subdiretório pelo nome
+     * @param entries Entradas de um diretório
+     * @param name Nome exato do subdiretório
+     * @return Entrada do subdiretório ou null se não encontrado
+     */
+    public static Entry findDirectory(List<Entry> entries, String name) {
+        for (Entry entry : entries) {
+            if (entry.isDirectory() && name.equals(entry.getName())) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cria um subdiretório
+     * @param context Contexto da aplicação
+     * @param treeUri URI da árvore autorizada
+     * @param parentDocumentId ID do diretório pai
+     * @param name Nome do novo diretório
+     * @return URI do diretório criado ou null se falhou
+     */
+    public static Uri createDirectory(Context context, Uri treeUri, String parentDocumentId, String name) {
+        Uri parentUri = DocumentsContract.buildDocumentUriUsingTree(treeUri, parentDocumentId);
+        try {
+            return DocumentsContract.createDocument(context.getContentResolver(), parentUri,
+                    DocumentsContract.Document.MIME_TYPE_DIR, name);
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao criar diretório " + name + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -2,12 +2,14 @@ package com.example.pegasusimagemanager;
 
 import android.content.Context;
 import android.net.Uri;
+import android.provider.DocumentsContract;
 import androidx.documentfile.provider.DocumentFile;
 
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -20,28 +22,25 @@ public class FileHelper {
      * @return Nome do console ou null se não encontrado
      */
     public static String readConsoleNameFromMetadata(Context context, Uri directoryUri) {
-        DocumentFile directory = DocumentFile.fromTreeUri(context, directoryUri);
-        
-        if (directory == null || !directory.exists() || !directory.isDirectory()) {
-            return null;
-        }
-
         // Procura pelo arquivo metadata.pegasus.txt
-        DocumentFile metadataFile = null;
-        DocumentFile[] files = directory.listFiles();
-        
-        for (DocumentFile file : files) {
-            if (file != null && file.isFile() && "metadata.pegasus.txt".equals(file.getName())) {
-                metadataFile = file;
-                break;
-            }
-        }
+        DocumentScanner.Entry metadataFile = DocumentScanner.findFile(
+                DocumentScanner.listChildren(context, directoryUri), "metadata.pegasus.txt");
         
         if (metadataFile == null) {
             return null;
         }
 
-        try (InputStream inputStream = context.getContentResolver().openInputStream(metadataFile.getUri());
+        return readConsoleNameFromMetadataFile(context, metadataFile.getUri(directoryUri));
+    }
+
+    /**
+     * Lê o nome do console de um arquivo metadata.pegasus.txt já localizado
+     * @param context Contexto da aplicação
+     * @param metadataFileUri URI do arquivo metadata.pegasus.txt
+     * @return Nome do console ou null se não encontrado
+     */
+    public static String readConsoleNameFromMetadataFile(Context context, Uri metadataFileUri) {
+        try (InputStream inputStream = context.getContentResolver().openInputStream(metadataFileUri);
              BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
             
             String line;
@@ -68,22 +67,11 @@ public class FileHelper {
      */
     public static List<String> readGameNamesFromDesktopFiles(Context context, Uri directoryUri) {
         List<String> gameNames = new ArrayList<>();
-        DocumentFile directory = DocumentFile.fromTreeUri(context, directoryUri);
-
-        if (directory == null || !directory.exists() || !directory.isDirectory()) {
-            return gameNames;
-        }
 
-        DocumentFile[] files = directory.listFiles();
-        
-        if (files == null) {
-            return gameNames;
-        }
-
-        for (DocumentFile file : files) {
-            if (file != null && file.isFile() && file.getName() != null && 
+        for (DocumentScanner.Entry file : DocumentScanner.listChildren(context, directoryUri)) {
+            if (file.isFile() && file.getName() != null && 
                 file.getName().toLowerCase().endsWith(".desktop")) {
-                String gameName = readGameNameFromDesktopFile(context, file);
+                String gameName = readGameNameFromDesktopFile(context, file.getUri(directoryUri));
                 if (gameName != null && !gameName.isEmpty()) {
                     gameNames.add(gameName);
                 }
@@ -96,11 +84,11 @@ public class FileHelper {
     /**
      * Lê um arquivo .desktop específico e extrai o nome do jogo usando SAF
      * @param context Contexto da aplicação
-     * @param desktopFile DocumentFile do arquivo .desktop
+     * @param desktopFileUri URI do arquivo .desktop
      * @return Nome do jogo ou null se não encontrado
      */
-    private static String readGameNameFromDesktopFile(Context context, DocumentFile desktopFile) {
-        try (InputStream inputStream = context.getContentResolver().openInputStream(desktopFile.getUri());
+    public static String readGameNameFromDesktopFile(Context context, Uri desktopFileUri) {
+        try (InputStream inputStream = context.getContentResolver().openInputStream(desktopFileUri);
              BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
             
             String line;
@@ -140,40 +128,35 @@ public class FileHelper {
      * @return DocumentFile do diretório criado ou null se falhou
      */
     public static DocumentFile createGameMediaDirectory(Context context, Uri pegasusDirectoryUri, String gameName) {
-        DocumentFile pegasusRoot = DocumentFile.fromTreeUri(context, pegasusDirectoryUri);
-        
-        if (pegasusRoot == null || !pegasusRoot.exists() || !pegasusRoot.isDirectory()) {
-            return null;
-        }
-        
         // Procura ou cria pasta "media"
-        DocumentFile mediaDir = null;
-        DocumentFile[] existingDirs = pegasusRoot.listFiles();
-        for (DocumentFile dir : existingDirs) {
-            if (dir != null && dir.isDirectory() && "media".equals(dir.getName())) {
-                mediaDir = dir;
-                break;
-            }
-        }
+        String rootId = DocumentScanner.getDocumentId(context, pegasusDirectoryUri);
+        DocumentScanner.Entry mediaEntry = DocumentScanner.findDirectory(
+                DocumentScanner.listChildren(context, pegasusDirectoryUri, rootId), "media");
         
-        if (mediaDir == null) {
-            // Cria pasta "media"
-            mediaDir = pegasusRoot.createDirectory("media");
-            if (mediaDir == null) {
+        String mediaId;
+        if (mediaEntry != null) {
+            mediaId = mediaEntry.getDocumentId();
+        } else {
+            // Cria pasta "media"; a notificação resultante é do próprio app
+            LibraryWatcher.noteOwnWrite(pegasusDirectoryUri);
+            Uri mediaUri = DocumentScanner.createDirectory(context, pegasusDirectoryUri, rootId, "media");
+            if (mediaUri == null) {
                 return null;
             }
+            mediaId = DocumentsContract.getDocumentId(mediaUri);
         }
         
         // Procura ou cria pasta do jogo dentro de "media"
-        DocumentFile[] gameDirs = mediaDir.listFiles();
-        for (DocumentFile dir : gameDirs) {
-            if (dir != null && dir.isDirectory() && gameName.equals(dir.getName())) {
-                return dir; // Diretório do jogo já existe
-            }
+        DocumentScanner.Entry gameEntry = DocumentScanner.findDirectory(
+                DocumentScanner.listChildren(context, pegasusDirectoryUri, mediaId), gameName);
+        if (gameEntry != null) {
+            return gameEntry.toDocumentFile(context, pegasusDirectoryUri); // Diretório do jogo já existe
         }
         
         // Cria novo diretório do jogo
-        return mediaDir.createDirectory(gameName);
+        LibraryWatcher.noteOwnWrite(pegasusDirectoryUri);
+        Uri gameUri = DocumentScanner.createDirectory(context, pegasusDirectoryUri, mediaId, gameName);
+        return gameUri != null ? DocumentFile.fromTreeUri(context, gameUri) : null;
     }
 
     /**
@@ -184,35 +167,19 @@ public class FileHelper {
      * @return DocumentFile do diretório do jogo ou null se não encontrado
      */
     public static DocumentFile getGameDirectory(Context context, Uri pegasusDirectoryUri, String gameName) {
-        DocumentFile pegasusRoot = DocumentFile.fromTreeUri(context, pegasusDirectoryUri);
-        
-        if (pegasusRoot == null || !pegasusRoot.exists() || !pegasusRoot.isDirectory()) {
-            return null;
-        }
-        
         // Procura pasta "media"
-        DocumentFile mediaDir = null;
-        DocumentFile[] existingDirs = pegasusRoot.listFiles();
-        for (DocumentFile dir : existingDirs) {
-            if (dir != null && dir.isDirectory() && "media".equals(dir.getName())) {
-                mediaDir = dir;
-                break;
-            }
-        }
+        DocumentScanner.Entry mediaEntry = DocumentScanner.findDirectory(
+                DocumentScanner.listChildren(context, pegasusDirectoryUri), "media");
         
-        if (mediaDir == null) {
+        if (mediaEntry == null) {
             return null;
         }
         
         // Procura pasta do jogo
-        DocumentFile[] gameDirs = mediaDir.listFiles();
-        for (DocumentFile dir : gameDirs) {
-            if (dir != null && dir.isDirectory() && gameName.equals(dir.getName())) {
-                return dir;
-            }
-        }
+        DocumentScanner.Entry gameEntry = DocumentScanner.findDirectory(
+                DocumentScanner.listChildren(context, pegasusDirectoryUri, mediaEntry.getDocumentId()), gameName);
         
-        return null;
+        return gameEntry != null ? gameEntry.toDocumentFile(context, pegasusDirectoryUri) : null;
     }
 
     /**
@@ -222,18 +189,26 @@ public class FileHelper {
      * @return DocumentFile da imagem ou null se não existe
      */
     public static DocumentFile getBoxFrontImage(Context context, DocumentFile gameDirectory) {
-        if (gameDirectory == null || !gameDirectory.exists() || !gameDirectory.isDirectory()) {
+        return getMediaImage(context, gameDirectory, MediaAsset.BOX_FRONT.getFileName());
+    }
+
+    /**
+     * Procura uma imagem de mídia (boxFront.png, logo.png...) no diretório do jogo
+     * @param context Contexto da aplicação
+     * @param gameDirectory DocumentFile do diretório do jogo
+     * @param fileName Nome do arquivo
+     * @return DocumentFile da imagem ou null se não existe
+     */
+    public static DocumentFile getMediaImage(Context context, DocumentFile gameDirectory, String fileName) {
+        if (gameDirectory == null) {
             return null;
         }
         
-        DocumentFile[] files = gameDirectory.listFiles();
-        for (DocumentFile file : files) {
-            if (file != null && file.isFile() && "boxFront.png".equals(file.getName())) {
-                return file;
-            }
-        }
+        Uri directoryUri = gameDirectory.getUri();
+        DocumentScanner.Entry imageEntry = DocumentScanner.findFile(
+                DocumentScanner.listChildren(context, directoryUri), fileName);
         
-        return null;
+        return imageEntry != null ? imageEntry.toDocumentFile(context, directoryUri) : null;
     }
 
     /**
@@ -243,17 +218,82 @@ public class FileHelper {
      * @return DocumentFile da imagem criada ou null se falhou
      */
     public static DocumentFile createBoxFrontImage(Context context, DocumentFile gameDirectory) {
-        if (gameDirectory == null || !gameDirectory.exists() || !gameDirectory.isDirectory()) {
+        return createMediaImage(context, gameDirectory, MediaAsset.BOX_FRONT.getFileName());
+    }
+
+    /**
+     * Cria ou substitui uma imagem de mídia no diretório do jogo
+     * @param context Contexto da aplicação
+     * @param gameDirectory DocumentFile do diretório do jogo
+     * @param fileName Nome do arquivo
+     * @return DocumentFile da imagem criada ou null se falhou
+     */
+    public static DocumentFile createMediaImage(Context context, DocumentFile gameDirectory, String fileName) {
+        if (gameDirectory == null) {
             return null;
         }
         
         // Remove imagem existente se houver
-        DocumentFile existingImage = getBoxFrontImage(context, gameDirectory);
+        DocumentFile existingImage = getMediaImage(context, gameDirectory, fileName);
         if (existingImage != null) {
             existingImage.delete();
         }
         
         // Cria nova imagem
-        return gameDirectory.createFile("image/png", "boxFront.png");
+        return gameDirectory.createFile("image/png", fileName);
+    }
+
+    /**
+     * Data a registrar para uma imagem que o app acabou de gravar. A miniatura
+     * da capa é identificada por essa data, mas a do provedor pode ter
+     * resolução de segundos ou nem mudar quando o arquivo é regravado; o
+     * horário atual garante um valor novo a cada gravação.
+     * @param image Imagem gravada
+     * @return Data de modificação, nunca anterior ao momento da chamada
+     */
+    public static long writtenLastModified(DocumentFile image) {
+        return Math.max(image.lastModified(), System.currentTimeMillis());
+    }
+
+    /**
+     * Grava a imagem boxFront.png no diretório do jogo a partir de um fluxo,
+     * substituindo a existente
+     * @param context Contexto da aplicação
+     * @param gameDirectory DocumentFile do diretório do jogo
+     * @param image Conteúdo da imagem; não é fechado aqui
+     * @return DocumentFile da imagem gravada ou null se falhou
+     */
+    public static DocumentFile writeBoxFrontImage(Context context, DocumentFile gameDirectory,
+                                                  InputStream image) throws IOException {
+        return writeMediaImage(context, gameDirectory, MediaAsset.BOX_FRONT.getFileName(), image);
+    }
+
+    /**
+     * Grava uma imagem de mídia no diretório do jogo a partir de um fluxo,
+     * substituindo a existente
+     * @param context Contexto da aplicação
+     * @param gameDirectory DocumentFile do diretório do jogo
+     * @param fileName Nome do arquivo
+     * @param image Conteúdo da imagem; não é fechado aqui
+     * @return DocumentFile da imagem gravada ou null se falhou
+     */
+    public static DocumentFile writeMediaImage(Context context, DocumentFile gameDirectory, String fileName,
+                                               InputStream image) throws IOException {
+        DocumentFile imageFile = createMediaImage(context, gameDirectory, fileName);
+        if (imageFile == null) {
+            return null;
+        }
+
+        try (OutputStream outputStream = context.getContentResolver().openOutputStream(imageFile.getUri())) {
+            if (outputStream == null) {
+                return null;
+            }
+            byte[] buffer = new byte[8192];
+            int bytesRead;
+            while ((bytesRead = image.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, bytesRead);
+            }
+        }
+        return imageFile;
     }
-}
\ No newline at end of file
+}
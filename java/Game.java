@@ -2,25 +2,67 @@ package com.example.pegasusimagemanager;
 
 import android.content.Context;
 import android.net.Uri;
+import android.provider.DocumentsContract;
 import androidx.documentfile.provider.DocumentFile;
 
+/**
+ * Jogo da lista em formato compacto: guarda só textos e IDs de documento.
+ * A URI da coleção é a mesma instância para todos os jogos dela, os nomes são
+ * internalizados e a pasta de mídia e o boxFront.png ficam como IDs de
+ * documento; Uri e DocumentFile só são criados quando a linha é desenhada ou
+ * quando o usuário age sobre o jogo. A PagedGameList só mantém carregadas
+ * as páginas ao redor da posição exibida.
+ */
 public class Game {
+    // Bits de flags
+    private static final int FLAG_IMAGE_RESOLVED = 1;
+    private static final int FLAG_HAS_IMAGE = 1 << 1;
+    private static final int FLAG_FIRST_OF_COLLECTION = 1 << 2;
+
+    // _id do jogo no índice; 0 para jogos que ainda não foram gravados
+    private long id;
     private String name;
-    private Uri imageUri;
-    private DocumentFile gameDirectory;
-    private boolean hasImage;
+    private String sourceDocumentId;
+    private Uri collectionUri;
+    private String collectionName;
+    private String mediaDocumentId;
+    private String imageDocumentId;
+    // Data de modificação do boxFront.png: troca a miniatura quando a capa muda
+    private long imageLastModified;
+    private byte flags;
 
     public Game(String name) {
-        this.name = name;
-        this.imageUri = null;
-        this.gameDirectory = null;
-        this.hasImage = false;
+        this.name = intern(name);
+    }
+
+    private static String intern(String text) {
+        return text != null ? text.intern() : null;
+    }
+
+    /**
+     * A lista trabalha com instantâneos: em vez de alterar um jogo já exibido,
+     * altera-se uma cópia e a lista nova é enviada ao adapter
+     * @return Cópia com os mesmos campos
+     */
+    public Game copy() {
+        Game copy = new Game(name);
+        copy.id = id;
+        copy.sourceDocumentId = sourceDocumentId;
+        copy.collectionUri = collectionUri;
+        copy.collectionName = collectionName;
+        copy.mediaDocumentId = mediaDocumentId;
+        copy.imageDocumentId = imageDocumentId;
+        copy.imageLastModified = imageLastModified;
+        copy.flags = flags;
+        return copy;
+    }
+
+    public long getId() {
+        return id;
     }
 
-    public Game(String name, Uri imageUri) {
-        this.name = name;
-        this.imageUri = imageUri;
-        this.hasImage = imageUri != null;
+    public void setId(long id) {
+        this.id = id;
     }
 
     public String getName() {
@@ -28,81 +70,159 @@ public class Game {
     }
 
     public void setName(String name) {
-        this.name = name;
+        this.name = intern(name);
     }
 
+    /**
+     * @return URI do boxFront.png, criada na hora, ou null se não existe
+     */
     public Uri getImageUri() {
-        return imageUri;
+        return buildDocumentUri(imageDocumentId);
     }
 
-    public void setImageUri(Uri imageUri) {
-        this.imageUri = imageUri;
-        this.hasImage = imageUri != null;
+    /**
+     * @return ID do documento do boxFront.png ou null se não existe
+     */
+    public String getImageDocumentId() {
+        return imageDocumentId;
     }
 
-    public DocumentFile getGameDirectory() {
-        return gameDirectory;
+    /**
+     * @return Data de modificação do boxFront.png, 0 se não é conhecida
+     */
+    public long getImageLastModified() {
+        return imageLastModified;
     }
 
-    public void setGameDirectory(DocumentFile gameDirectory) {
-        this.gameDirectory = gameDirectory;
-        // Atualiza status da imagem se temos diretório
-        if (gameDirectory != null) {
-            updateImageStatus();
-        }
+    /**
+     * Define a imagem a partir da URI de um documento da árvore da coleção
+     * @param imageUri URI do boxFront.png ou null se não existe
+     * @param lastModified Data de modificação do boxFront.png
+     */
+    public void setImageUri(Uri imageUri, long lastModified) {
+        setImageDocument(imageUri != null ? DocumentsContract.getDocumentId(imageUri) : null, lastModified);
     }
 
-    public boolean hasImage() {
-        return hasImage;
+    private void setImageDocument(String imageDocumentId, long lastModified) {
+        this.imageDocumentId = imageDocumentId;
+        this.imageLastModified = imageDocumentId != null ? lastModified : 0;
+        setFlag(FLAG_HAS_IMAGE, imageDocumentId != null);
+        setFlag(FLAG_IMAGE_RESOLVED, true);
     }
 
-    public void setHasImage(boolean hasImage) {
-        this.hasImage = hasImage;
+    /**
+     * @return ID do documento da pasta de mídia do jogo ou null se não existe
+     */
+    public String getMediaDocumentId() {
+        return mediaDocumentId;
     }
 
     /**
-     * Atualiza o status da imagem verificando se existe no diretório
+     * @return URI da pasta de mídia do jogo, criada na hora, ou null se não existe
      */
-    private void updateImageStatus() {
-        if (gameDirectory != null) {
-            DocumentFile[] files = gameDirectory.listFiles();
-            boolean foundImage = false;
-            
-            for (DocumentFile file : files) {
-                if (file != null && file.isFile() && "boxFront.png".equals(file.getName())) {
-                    this.imageUri = file.getUri();
-                    this.hasImage = true;
-                    foundImage = true;
-                    break;
-                }
-            }
-            
-            if (!foundImage) {
-                this.imageUri = null;
-                this.hasImage = false;
-            }
-        }
+    public Uri getGameDirectoryUri() {
+        return buildDocumentUri(mediaDocumentId);
     }
 
     /**
-     * Verifica se existe imagem para este jogo usando DocumentFile
      * @param context Contexto da aplicação
-     * @return true se existe imagem
+     * @return DocumentFile da pasta de mídia do jogo ou null se não existe
      */
-    public boolean checkImageExists(Context context) {
-        if (gameDirectory == null) {
-            return false;
-        }
-        
-        DocumentFile imageFile = FileHelper.getBoxFrontImage(context, gameDirectory);
-        if (imageFile != null) {
-            this.imageUri = imageFile.getUri();
-            this.hasImage = true;
-            return true;
+    public DocumentFile getGameDirectory(Context context) {
+        Uri uri = getGameDirectoryUri();
+        return uri != null ? DocumentFile.fromTreeUri(context, uri) : null;
+    }
+
+    /**
+     * Define a pasta e a imagem já conhecidas (ex.: vindas do índice
+     * persistente) sem consultar o armazenamento
+     * @param mediaDocumentId ID do documento da pasta do jogo ou null se não existe
+     * @param imageDocumentId ID do documento do boxFront.png ou null se não existe
+     * @param imageLastModified Data de modificação do boxFront.png
+     */
+    public void setMediaDocuments(String mediaDocumentId, String imageDocumentId, long imageLastModified) {
+        this.mediaDocumentId = mediaDocumentId;
+        setImageDocument(imageDocumentId, imageLastModified);
+    }
+
+    private Uri buildDocumentUri(String documentId) {
+        if (documentId == null || collectionUri == null) {
+            return null;
         }
-        
-        this.imageUri = null;
-        this.hasImage = false;
-        return false;
+        return DocumentsContract.buildDocumentUriUsingTree(collectionUri, documentId);
+    }
+
+    /**
+     * @return ID do documento .desktop de onde o jogo foi lido
+     */
+    public String getSourceDocumentId() {
+        return sourceDocumentId;
+    }
+
+    public void setSourceDocumentId(String sourceDocumentId) {
+        this.sourceDocumentId = sourceDocumentId;
+    }
+
+    /**
+     * @return URI da árvore da pasta Pegasus à qual o jogo pertence
+     */
+    public Uri getCollectionUri() {
+        return collectionUri;
+    }
+
+    public void setCollectionUri(Uri collectionUri) {
+        this.collectionUri = collectionUri;
+    }
+
+    /**
+     * @return Nome do console da coleção, usado para agrupar a lista
+     */
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    public void setCollectionName(String collectionName) {
+        this.collectionName = intern(collectionName);
+    }
+
+    /**
+     * Caminho planejado da pasta de mídia, relativo à pasta Pegasus. A pasta
+     * só é criada quando a primeira imagem do jogo é gravada.
+     * @return Caminho no formato "media/Nome do Jogo"
+     */
+    public String getMediaPath() {
+        return MediaTreeIndex.MEDIA_DIRECTORY + "/" + name;
+    }
+
+    /**
+     * @return true se é o primeiro jogo da coleção na lista completa, onde
+     *         aparece o cabeçalho com o nome da coleção
+     */
+    public boolean isFirstOfCollection() {
+        return hasFlag(FLAG_FIRST_OF_COLLECTION);
+    }
+
+    public void setFirstOfCollection(boolean firstOfCollection) {
+        setFlag(FLAG_FIRST_OF_COLLECTION, firstOfCollection);
+    }
+
+    public boolean hasImage() {
+        return hasFlag(FLAG_HAS_IMAGE);
+    }
+
+    /**
+     * @return true se a presença da imagem já é conhecida, como nos jogos
+     *         lidos do índice
+     */
+    public boolean isImageResolved() {
+        return hasFlag(FLAG_IMAGE_RESOLVED);
+    }
+
+    private boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    private void setFlag(int flag, boolean value) {
+        flags = (byte) (value ? flags | flag : flags & ~flag);
     }
-}
\ No newline at end of file
+}
@@ -1,6 +1,9 @@
 package com.example.pegasusimagemanager;
 
 import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -8,33 +11,117 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import com.bumptech.glide.Glide;
 import com.google.android.material.button.MaterialButton;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-public class GameAdapter extends RecyclerView.Adapter<GameAdapter.GameViewHolder> {
+/**
+ * Lista de jogos lida em páginas do índice persistente (LibraryDatabase).
+ * Cada mudança na biblioteca gera uma nova PagedGameList, montada numa thread
+ * de apoio já com as páginas ao redor da posição exibida, e o AsyncListDiffer
+ * do ListAdapter calcula as diferenças em segundo plano; só as linhas afetadas
+ * são redesenhadas, e mudanças apenas na imagem atualizam só a capa.
+ * A busca filtra pelo GameSearchIndex e exibe o resultado também em páginas.
+ */
+public class GameAdapter extends ListAdapter<Game, GameAdapter.GameViewHolder>
+        implements BoxFrontCache.Listener, PagedGameList.Callback {
 
-    private List<Game> games;
+    // Payload quando só a imagem do jogo mudou
+    private static final Object PAYLOAD_IMAGE = new Object();
+    // Payload quando só o cabeçalho da coleção mudou
+    private static final Object PAYLOAD_HEADER = new Object();
+
+    private static final DiffUtil.ItemCallback<Game> DIFF_CALLBACK = new DiffUtil.ItemCallback<Game>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Game oldGame, @NonNull Game newGame) {
+            return BoxFrontCache.keyOf(oldGame).equals(BoxFrontCache.keyOf(newGame));
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Game oldGame, @NonNull Game newGame) {
+            return sameText(oldGame, newGame) && sameImage(oldGame, newGame);
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Game oldGame, @NonNull Game newGame) {
+            return sameText(oldGame, newGame) ? PAYLOAD_IMAGE : null;
+        }
+    };
+
+    private final LibraryDatabase database;
+    private final Handler mainHandler;
+    // Leituras do banco, uma de cada vez e na ordem dos pedidos
+    private final ExecutorService executor;
+    private final AtomicBoolean reloadQueued = new AtomicBoolean(false);
+
+    // Usados só na thread de apoio
+    private final GameSearchIndex searchIndex = new GameSearchIndex();
+    private final Map<String, Uri> collectionUris = new HashMap<>();
+    private boolean searchIndexStale = true;
+
+    // Lista exibida (já aplicada pelo AsyncListDiffer)
+    private PagedGameList displayed = PagedGameList.empty();
+    private Uri rootUri;
+    // Descarta listas montadas para uma pasta ou busca anterior
+    private int generation;
+    private int gameCount;
+    private String query = "";
+    private boolean missingImageOnly;
+    private boolean shutDown;
+
+    private final BoxFrontCache boxFrontCache;
+    private final CoverThumbnails thumbnails;
+    // Jogos aguardando a conferência do boxFront.png, por chave
+    private final Map<String, Game> resolving = new HashMap<>();
     private Context context;
     private OnGameClickListener listener;
+    private OnGameCountListener countListener;
+    private boolean showCollectionHeaders;
 
     public interface OnGameClickListener {
         void onAddImageClick(Game game, int position);
         void onSearchCoverClick(Game game, int position);
     }
 
-    public GameAdapter(List<Game> games, Context context) {
-        this.games = games;
+    /**
+     * Avisado quando o total de jogos da pasta muda
+     */
+    public interface OnGameCountListener {
+        void onGameCountChanged(int count);
+    }
+
+    public GameAdapter(Context context) {
+        super(DIFF_CALLBACK);
         this.context = context;
+        this.database = LibraryDatabase.getInstance(context);
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.executor = Executors.newSingleThreadExecutor();
+        this.boxFrontCache = new BoxFrontCache(context, this);
+        this.thumbnails = new CoverThumbnails(context);
+        setHasStableIds(true);
     }
 
     public void setOnGameClickListener(OnGameClickListener listener) {
         this.listener = listener;
     }
 
+    public void setOnGameCountListener(OnGameCountListener countListener) {
+        this.countListener = countListener;
+    }
+
     @NonNull
     @Override
     public GameViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -44,21 +131,319 @@ public class GameAdapter extends RecyclerView.Adapter<GameAdapter.GameViewHolder
 
     @Override
     public void onBindViewHolder(@NonNull GameViewHolder holder, int position) {
-        Game game = games.get(position);
-        holder.bind(game, position);
+        displayed.loadAround(position);
+        Game game = getItem(position);
+        if (game != null) {
+            holder.bind(game);
+        } else {
+            holder.bindPlaceholder();
+        }
     }
 
     @Override
-    public int getItemCount() {
-        return games.size();
+    public void onBindViewHolder(@NonNull GameViewHolder holder, int position, @NonNull List<Object> payloads) {
+        Game game = getItem(position);
+        if (payloads.isEmpty() || game == null) {
+            super.onBindViewHolder(holder, position, payloads);
+            return;
+        }
+        if (payloads.contains(PAYLOAD_HEADER)) {
+            holder.bindHeader(game);
+        }
+        if (payloads.contains(PAYLOAD_IMAGE)) {
+            holder.bindImage(game);
+        }
+    }
+
+    /**
+     * ID estável: o _id do jogo no índice, que não muda entre leituras, para
+     * que a RecyclerView preserve as linhas. Marcadores de posições ainda não
+     * lidas usam IDs negativos.
+     */
+    @Override
+    public long getItemId(int position) {
+        Game game = getItem(position);
+        if (game == null) {
+            return Long.MIN_VALUE + position;
+        }
+        return game.getId();
+    }
+
+    /**
+     * @return Total de jogos da pasta, sem o filtro
+     */
+    public int getGameCount() {
+        return gameCount;
+    }
+
+    /**
+     * @return Versão atual do jogo, se ainda está entre as páginas carregadas
+     */
+    public Game findGame(Game game) {
+        return displayed.findLoaded(BoxFrontCache.keyOf(game));
+    }
+
+    /**
+     * Passa a exibir o índice de uma pasta. O que já estiver indexado aparece
+     * de imediato; as leituras seguintes chegam por reload().
+     * @param rootUri URI da pasta escolhida pelo usuário ou null para nenhuma
+     */
+    public void setLibrary(Uri rootUri) {
+        this.rootUri = rootUri;
+        generation++;
+        setGameCount(0);
+        executor.execute(() -> {
+            searchIndex.clear();
+            searchIndexStale = true;
+        });
+        submitPaged(PagedGameList.empty());
+        load(0);
+    }
+
+    public void clear() {
+        setLibrary(null);
+    }
+
+    /**
+     * Relê a lista porque o índice mudou. Pedidos feitos antes da leitura
+     * começar são atendidos por ela.
+     */
+    public void reload() {
+        if (rootUri == null || !reloadQueued.compareAndSet(false, true)) {
+            return;
+        }
+        load(displayed.getLastPosition());
     }
 
-    public void updateGame(int position, Game game) {
-        games.set(position, game);
-        notifyItemChanged(position);
+    /**
+     * Filtra a lista pelo índice de busca, sem percorrer os jogos de novo
+     * @param query Trecho do nome (sem diferença de acentos ou maiúsculas)
+     * @param missingImageOnly true para mostrar só jogos sem boxFront
+     */
+    public void setFilter(String query, boolean missingImageOnly) {
+        String newQuery = query != null ? query : "";
+        if (newQuery.equals(this.query) && missingImageOnly == this.missingImageOnly) {
+            return;
+        }
+        this.query = newQuery;
+        this.missingImageOnly = missingImageOnly;
+        generation++;
+        load(0);
+    }
+
+    private static boolean isFiltering(String query, boolean missingImageOnly) {
+        return missingImageOnly || !query.trim().isEmpty();
+    }
+
+    /**
+     * Monta a lista na thread de apoio e a envia ao diff
+     * @param aroundPosition Posição cujas páginas já vêm carregadas
+     */
+    private void load(int aroundPosition) {
+        Uri root = rootUri;
+        if (root == null || shutDown) {
+            return;
+        }
+        int loadGeneration = generation;
+        String loadQuery = query;
+        boolean loadMissingImageOnly = missingImageOnly;
+
+        executor.execute(() -> {
+            if (reloadQueued.getAndSet(false)) {
+                // O índice mudou: a busca relê os nomes na próxima consulta
+                searchIndexStale = true;
+            }
+            String rootKey = root.toString();
+            int total = database.countListedGames(rootKey);
+
+            List<String> keys = null;
+            if (isFiltering(loadQuery, loadMissingImageOnly)) {
+                if (searchIndexStale) {
+                    searchIndex.sync(database.getListedNames(rootKey));
+                    searchIndexStale = false;
+                }
+                keys = searchIndex.filter(loadQuery, loadMissingImageOnly);
+            }
+
+            GamePagingSource source = new GamePagingSource(database, rootKey, keys, collectionUris);
+            PagedGameList list = PagedGameList.create(source, aroundPosition, executor, mainHandler);
+            mainHandler.post(() -> {
+                if (loadGeneration == generation) {
+                    setGameCount(total);
+                    submitPaged(list);
+                }
+            });
+        });
+    }
+
+    private void setGameCount(int count) {
+        if (gameCount != count) {
+            gameCount = count;
+            if (countListener != null) {
+                countListener.onGameCountChanged(count);
+            }
+        }
+    }
+
+    /**
+     * Envia uma lista nova. As duas listas ficam congeladas enquanto o diff
+     * as lê; a anterior é descartada quando a nova é aplicada.
+     */
+    private void submitPaged(PagedGameList list) {
+        PagedGameList previous = displayed;
+        previous.setFrozen(true);
+        list.setFrozen(true);
+        list.setCallback(this);
+        submitList(list, () -> {
+            if (previous != list) {
+                previous.detach();
+            }
+            displayed = list;
+            list.setFrozen(false);
+        });
+    }
+
+    @Override
+    public void onRangeLoaded(PagedGameList list, int start, int count) {
+        if (list == displayed) {
+            notifyItemRangeChanged(start, count);
+        }
+    }
+
+    private static boolean sameText(Game a, Game b) {
+        return Objects.equals(a.getName(), b.getName())
+                && Objects.equals(a.getCollectionName(), b.getCollectionName())
+                && a.isFirstOfCollection() == b.isFirstOfCollection();
+    }
+
+    private static boolean sameImage(Game a, Game b) {
+        return a.hasImage() == b.hasImage()
+                && a.isImageResolved() == b.isImageResolved()
+                && Objects.equals(a.getImageDocumentId(), b.getImageDocumentId())
+                && a.getImageLastModified() == b.getImageLastModified();
+    }
+
+    /**
+     * Mostra o nome da coleção acima do primeiro jogo de cada grupo. Só faz
+     * sentido quando a pasta escolhida tem mais de uma coleção.
+     * @param show true para mostrar os cabeçalhos
+     */
+    public void setShowCollectionHeaders(boolean show) {
+        if (showCollectionHeaders != show) {
+            showCollectionHeaders = show;
+            notifyItemRangeChanged(0, getItemCount(), PAYLOAD_HEADER);
+        }
+    }
+
+    /**
+     * Grava no índice a pasta e a imagem de um jogo alterado pelo app e
+     * relê a lista
+     * @param game Cópia já alterada do jogo
+     */
+    public void updateGame(Game game) {
+        LibraryDatabase.MediaUpdate update = toMediaUpdate(game, game.getMediaDocumentId(),
+                game.getImageDocumentId(), game.getImageLastModified());
+        if (update != null && persistMedia(Collections.singletonList(update))) {
+            load(displayed.getLastPosition());
+        }
+    }
+
+    /**
+     * @return Gravação da mídia do jogo ou null se o jogo não está no índice
+     */
+    private static LibraryDatabase.MediaUpdate toMediaUpdate(Game game, String mediaDocumentId,
+                                                             String imageDocumentId, long imageLastModified) {
+        if (game.getCollectionUri() == null || game.getSourceDocumentId() == null) {
+            return null;
+        }
+        return new LibraryDatabase.MediaUpdate(game.getCollectionUri().toString(), game.getSourceDocumentId(),
+                mediaDocumentId, imageDocumentId, imageLastModified);
+    }
+
+    /**
+     * Grava a mídia na fila da thread de apoio, numa transação só para todo
+     * o lote. A lista deve ser relida com load(), e não reload(): uma
+     * releitura já na fila rodaria antes da gravação.
+     * @return true se a gravação foi agendada
+     */
+    private boolean persistMedia(List<LibraryDatabase.MediaUpdate> updates) {
+        if (shutDown || updates.isEmpty()) {
+            return false;
+        }
+        executor.execute(() -> {
+            database.updateGameMedia(updates);
+            searchIndexStale = true;
+        });
+        return true;
+    }
+
+    /**
+     * Confere de novo a imagem de um jogo em segundo plano, por exemplo
+     * depois que outra tela gravou o boxFront.png. É o único caminho até o
+     * BoxFrontCache: os jogos lidos do índice já chegam com a imagem
+     * conferida pela varredura.
+     * @param game Jogo a conferir
+     */
+    public void refreshImage(Game game) {
+        boxFrontCache.invalidate(game);
+        resolving.put(BoxFrontCache.keyOf(game), game);
+        boxFrontCache.request(game);
+    }
+
+    /**
+     * Pede a miniatura da capa de uma posição que ainda não está na tela.
+     * Posições ainda não lidas do índice são ignoradas.
+     * @param position Posição na lista
+     */
+    public void preloadCover(int position) {
+        if (position < 0 || position >= getItemCount()) {
+            return;
+        }
+        Game game = getItem(position);
+        if (game != null && game.hasImage()) {
+            thumbnails.preload(game);
+        }
+    }
+
+    /**
+     * Esquece todas as imagens conhecidas, ao trocar de pasta
+     */
+    public void clearImageCache() {
+        boxFrontCache.clear();
+        resolving.clear();
+    }
+
+    /**
+     * Libera as threads; depois disso reload() e as demais releituras não
+     * fazem nada, mesmo se um aviso atrasado ainda chegar
+     */
+    public void shutdown() {
+        shutDown = true;
+        boxFrontCache.shutdown();
+        executor.shutdownNow();
+        displayed.detach();
+    }
+
+    @Override
+    public void onBoxFrontsResolved(Set<String> keys) {
+        // O lote conferido pelo BoxFrontCache vira uma gravação só
+        List<LibraryDatabase.MediaUpdate> updates = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Game game = resolving.remove(key);
+            BoxFrontCache.Entry entry = game != null ? boxFrontCache.get(game) : null;
+            LibraryDatabase.MediaUpdate update = entry != null ? toMediaUpdate(game,
+                    entry.getDirectoryDocumentId(), entry.getImageDocumentId(), entry.getImageLastModified()) : null;
+            if (update != null) {
+                updates.add(update);
+            }
+        }
+        if (persistMedia(updates)) {
+            load(displayed.getLastPosition());
+        }
     }
 
     class GameViewHolder extends RecyclerView.ViewHolder {
+        private TextView tvCollectionHeader;
         private TextView tvGameName;
         private TextView tvImageStatus;
         private ImageView imgGameCover;
@@ -68,31 +453,80 @@ public class GameAdapter extends RecyclerView.Adapter<GameAdapter.GameViewHolder
 
         public GameViewHolder(@NonNull View itemView) {
             super(itemView);
+            tvCollectionHeader = itemView.findViewById(R.id.tvCollectionHeader);
             tvGameName = itemView.findViewById(R.id.tvGameName);
             tvImageStatus = itemView.findViewById(R.id.tvImageStatus);
             imgGameCover = itemView.findViewById(R.id.imgGameCover);
             imgPlaceholder = itemView.findViewById(R.id.imgPlaceholder);
             btnAddImage = itemView.findViewById(R.id.btnAddImage);
             btnSearchCover = itemView.findViewById(R.id.btnSearchCover);
+
+            // A posição muda com os diffs: lê o jogo no momento do clique
+            btnAddImage.setOnClickListener(v -> {
+                Game game = currentGame();
+                if (listener != null && game != null) {
+                    listener.onAddImageClick(game, getBindingAdapterPosition());
+                }
+            });
+
+            btnSearchCover.setOnClickListener(v -> {
+                Game game = currentGame();
+                if (listener != null && game != null) {
+                    listener.onSearchCoverClick(game, getBindingAdapterPosition());
+                }
+            });
         }
 
-        public void bind(Game game, int position) {
+        private Game currentGame() {
+            int position = getBindingAdapterPosition();
+            return position != RecyclerView.NO_POSITION ? getItem(position) : null;
+        }
+
+        public void bind(Game game) {
+            bindHeader(game);
             tvGameName.setText(game.getName());
+            btnAddImage.setEnabled(true);
+            btnSearchCover.setEnabled(true);
+            bindImage(game);
+        }
 
-            // Verifica se o jogo tem imagem
-            game.checkImageExists(context);
+        /**
+         * Linha de uma posição ainda não lida do índice
+         */
+        void bindPlaceholder() {
+            tvCollectionHeader.setVisibility(View.GONE);
+            tvGameName.setText("");
+            tvImageStatus.setText("");
+            imgPlaceholder.setVisibility(View.VISIBLE);
+            imgGameCover.setVisibility(View.GONE);
+            btnAddImage.setEnabled(false);
+            btnSearchCover.setEnabled(false);
+        }
 
+        void bindHeader(Game game) {
+            // Num resultado de busca os grupos ficam incompletos: sem cabeçalhos
+            if (showCollectionHeaders && !displayed.isFiltered() && game.isFirstOfCollection()) {
+                tvCollectionHeader.setText(game.getCollectionName());
+                tvCollectionHeader.setVisibility(View.VISIBLE);
+            } else {
+                tvCollectionHeader.setVisibility(View.GONE);
+            }
+        }
+
+        /**
+         * Atualiza só a capa e o status. Não acessa o armazenamento: o jogo
+         * vem do índice com a imagem já conferida pela varredura.
+         */
+        void bindImage(Game game) {
             // Atualiza UI baseado na existência da imagem
             if (game.hasImage()) {
                 tvImageStatus.setText("Imagem disponível");
                 imgPlaceholder.setVisibility(View.GONE);
                 imgGameCover.setVisibility(View.VISIBLE);
                 btnAddImage.setText(context.getString(R.string.change_image));
-                
-                // Carrega imagem usando URI
-                Glide.with(context)
-                        .load(game.getImageUri())
-                        .centerCrop()
+
+                // Decodifica só a miniatura no tamanho do cartão
+                thumbnails.request(game)
                         .placeholder(android.R.drawable.ic_menu_gallery)
                         .into(imgGameCover);
             } else {
@@ -101,18 +535,6 @@ public class GameAdapter extends RecyclerView.Adapter<GameAdapter.GameViewHolder
                 imgGameCover.setVisibility(View.GONE);
                 btnAddImage.setText(context.getString(R.string.add_image));
             }
-
-            btnAddImage.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onAddImageClick(game, position);
-                }
-            });
-
-            btnSearchCover.setOnClickListener(v -> {
-                if (listener != null) {
-                    listener.onSearchCoverClick(game, position);
-                }
-            });
         }
     }
-}
\ No newline at end of file
+}
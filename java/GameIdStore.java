@@ -0,0 +1,334 @@
+package com.example.pegasusimagemanager;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Nome do jogo → ID na SteamGridDB, gravado quando o usuário confirma uma
+ * capa de um jogo que ele escolheu (ou que a busca achou sem ambiguidade:
+ * resultado único ou nome igual). Com o ID guardado, a tela de busca e o
+ * lote pulam a busca por nome e vão direto às imagens. Fica num banco
+ * próprio, separado do índice da biblioteca (que é descartado quando o
+ * esquema muda), e é lido inteiro para a memória uma vez, na primeira
+ * consulta. Pode ser exportado e importado em JSON para levar os IDs a
+ * outro aparelho.
+ */
+public class GameIdStore extends SQLiteOpenHelper {
+    private static final String TAG = "GameIdStore";
+    private static final String DATABASE_NAME = "steamgriddb_ids.db";
+    private static final int DATABASE_VERSION = 1;
+    private static final String TABLE_GAME_IDS = "game_ids";
+    private static final int EXPORT_VERSION = 1;
+
+    private static GameIdStore instance;
+
+    // Leitura, gravações e exportação, fora da thread principal
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Só a thread do executor acessa; null até a primeira consulta
+    private Map<String, Mapping> mappings;
+
+    /**
+     * Jogo da SteamGridDB escolhido para um nome
+     */
+    public static class Mapping {
+        public final int gameId;
+        // Nome do jogo na SteamGridDB, para exibição
+        public final String gameName;
+        public final long updatedAt;
+
+        Mapping(int gameId, String gameName, long updatedAt) {
+            this.gameId = gameId;
+            this.gameName = gameName;
+            this.updatedAt = updatedAt;
+        }
+
+        /**
+         * @return Resultado de busca equivalente, para seguir o mesmo caminho
+         *         de um jogo encontrado pela busca
+         */
+        public SteamGridDbResponse.GameResult toGameResult() {
+            SteamGridDbResponse.GameResult result = new SteamGridDbResponse.GameResult();
+            result.setId(gameId);
+            result.setName(gameName);
+            return result;
+        }
+    }
+
+    /**
+     * Resposta da consulta, na thread do store
+     */
+    public interface Lookup {
+        /**
+         * @param mapping ID guardado ou null se o nome não tem um
+         */
+        void onResult(Mapping mapping);
+    }
+
+    /**
+     * Fim de uma exportação ou importação, na thread principal
+     */
+    public interface TransferCallback {
+        /**
+         * @param count Jogos exportados ou importados
+         * @param error Mensagem de erro ou null se deu certo
+         */
+        void onComplete(int count, String error);
+    }
+
+    public static synchronized GameIdStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new GameIdStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private GameIdStore(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // Chave é o nome normalizado; sem rowid a tabela é só a árvore da chave
+        db.execSQL("CREATE TABLE " + TABLE_GAME_IDS + " ("
+                + "name TEXT PRIMARY KEY, "
+                + "game_id INTEGER NOT NULL, "
+                + "game_name TEXT, "
+                + "updated_at INTEGER NOT NULL) WITHOUT ROWID");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Só há a versão 1; versões futuras devem migrar, não descartar:
+        // os IDs foram escolhidos pelo usuário
+    }
+
+    /**
+     * Carrega os IDs em segundo plano, para que a primeira consulta não
+     * espere pela leitura do banco
+     */
+    public void preload() {
+        executor.execute(this::ensureLoaded);
+    }
+
+    /**
+     * Procura o ID guardado para um nome de jogo
+     * @param gameName Nome do jogo na biblioteca
+     * @param lookup Recebe o resultado na thread do store
+     */
+    public void lookup(String gameName, Lookup lookup) {
+        String key = SteamGridDbCache.normalizeQuery(gameName);
+        executor.execute(() -> lookup.onResult(ensureLoaded().get(key)));
+    }
+
+    /**
+     * Guarda o jogo escolhido para um nome, substituindo o anterior
+     * @param gameName Nome do jogo na biblioteca
+     * @param gameId ID do jogo na SteamGridDB
+     * @param steamGridDbName Nome do jogo na SteamGridDB
+     */
+    public void put(String gameName, int gameId, String steamGridDbName) {
+        String key = SteamGridDbCache.normalizeQuery(gameName);
+        Mapping mapping = new Mapping(gameId, steamGridDbName, System.currentTimeMillis());
+        executor.execute(() -> {
+            Mapping current = ensureLoaded().get(key);
+            if (current != null && current.gameId == gameId) {
+                return;
+            }
+            mappings.put(key, mapping);
+            getWritableDatabase().insertWithOnConflict(TABLE_GAME_IDS, null, toValues(key, mapping),
+                    SQLiteDatabase.CONFLICT_REPLACE);
+        });
+    }
+
+    /**
+     * Esquece o jogo guardado para um nome, quando o usuário pede uma nova
+     * busca ou o ID guardado não traz mais imagens
+     * @param gameName Nome do jogo na biblioteca
+     */
+    public void remove(String gameName) {
+        String key = SteamGridDbCache.normalizeQuery(gameName);
+        executor.execute(() -> {
+            if (ensureLoaded().remove(key) != null) {
+                getWritableDatabase().delete(TABLE_GAME_IDS, "name = ?", new String[]{key});
+            }
+        });
+    }
+
+    /**
+     * Grava todos os IDs em JSON
+     * @param output Destino; é fechado ao fim
+     * @param callback Recebe o total exportado
+     */
+    public void exportTo(OutputStream output, TransferCallback callback) {
+        executor.execute(() -> {
+            try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8))) {
+                // Dentro do try: um erro do banco ainda fecha o destino e avisa o callback
+                Map<String, Mapping> all = ensureLoaded();
+                writer.beginObject();
+                writer.name("version").value(EXPORT_VERSION);
+                writer.name("games").beginArray();
+                for (Map.Entry<String, Mapping> entry : all.entrySet()) {
+                    Mapping mapping = entry.getValue();
+                    writer.beginObject();
+                    writer.name("name").value(entry.getKey());
+                    writer.name("id").value(mapping.gameId);
+                    writer.name("steamGridDbName").value(mapping.gameName);
+                    writer.name("updatedAt").value(mapping.updatedAt);
+                    writer.endObject();
+                }
+                writer.endArray();
+                writer.endObject();
+                deliver(callback, all.size(), null);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Erro ao exportar: " + e.getMessage());
+                deliver(callback, 0, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Lê IDs exportados e junta aos guardados; quando os dois têm o mesmo
+     * nome, fica o escolhido por último
+     * @param input Origem; é fechada ao fim
+     * @param callback Recebe o total de IDs novos ou atualizados
+     */
+    public void importFrom(InputStream input, TransferCallback callback) {
+        executor.execute(() -> {
+            Map<String, Mapping> imported = new HashMap<>();
+            try (JsonReader reader = new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("games")) {
+                        readGames(reader, imported);
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Erro ao importar: " + e.getMessage());
+                deliver(callback, 0, e.getMessage());
+                return;
+            }
+
+            int changed = 0;
+            try {
+                Map<String, Mapping> all = ensureLoaded();
+                SQLiteDatabase db = getWritableDatabase();
+                db.beginTransaction();
+                try {
+                    for (Map.Entry<String, Mapping> entry : imported.entrySet()) {
+                        Mapping current = all.get(entry.getKey());
+                        if (current == null || current.updatedAt < entry.getValue().updatedAt) {
+                            all.put(entry.getKey(), entry.getValue());
+                            db.insertWithOnConflict(TABLE_GAME_IDS, null, toValues(entry.getKey(), entry.getValue()),
+                                    SQLiteDatabase.CONFLICT_REPLACE);
+                            changed++;
+                        }
+                    }
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+            } catch (RuntimeException e) {
+                // A transação foi desfeita, mas o mapa em memória pode ter mudado: relê
+                Log.e(TAG, "Erro ao importar: " + e.getMessage());
+                mappings = null;
+                deliver(callback, 0, e.getMessage());
+                return;
+            }
+            deliver(callback, changed, null);
+        });
+    }
+
+    private static void readGames(JsonReader reader, Map<String, Mapping> imported) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String name = null;
+            int gameId = 0;
+            String gameName = null;
+            long updatedAt = 0;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name":
+                        name = reader.nextString();
+                        break;
+                    case "id":
+                        gameId = reader.nextInt();
+                        break;
+                    case "steamGridDbName":
+                        if (reader.peek() == JsonToken.NULL) {
+                            reader.nextNull();
+                        } else {
+                            gameName = reader.nextString();
+                        }
+                        break;
+                    case "updatedAt":
+                        updatedAt = reader.nextLong();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+            if (name != null && gameId > 0) {
+                // Normaliza de novo: o arquivo pode vir de outra versão do app
+                imported.put(SteamGridDbCache.normalizeQuery(name), new Mapping(gameId, gameName, updatedAt));
+            }
+        }
+        reader.endArray();
+    }
+
+    private Map<String, Mapping> ensureLoaded() {
+        if (mappings != null) {
+            return mappings;
+        }
+        // Só guarda o mapa lido por inteiro: depois de um erro, a próxima consulta tenta de novo
+        Map<String, Mapping> loaded = new HashMap<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_GAME_IDS,
+                new String[]{"name", "game_id", "game_name", "updated_at"}, null, null, null, null, null)) {
+            while (cursor.moveToNext()) {
+                loaded.put(cursor.getString(0),
+                        new Mapping(cursor.getInt(1), cursor.getString(2), cursor.getLong(3)));
+            }
+        }
+        mappings = loaded;
+        return mappings;
+    }
+
+    private static ContentValues toValues(String key, Mapping mapping) {
+        ContentValues values = new ContentValues();
+        values.put("name", key);
+        values.put("game_id", mapping.gameId);
+        values.put("game_name", mapping.gameName);
+        values.put("updated_at", mapping.updatedAt);
+        return values;
+    }
+
+    private void deliver(TransferCallback callback, int count, String error) {
+        mainHandler.post(() -> callback.onComplete(count, error));
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.pegasusimagemanager;
+
+import android.net.Uri;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Origem das páginas da lista de jogos: o índice persistente de uma raiz,
+ * inteiro ou só os jogos de um resultado de busca. Lê o banco, então deve
+ * ser usada só na thread de apoio do adapter.
+ */
+public class GamePagingSource {
+    private final LibraryDatabase database;
+    private final String rootUri;
+    // IDs do resultado da busca, na ordem da lista; null para a lista inteira
+    private final List<String> sourceDocumentIds;
+    // Uma instância de Uri por coleção, compartilhada por todos os jogos dela
+    private final Map<String, Uri> collectionUris;
+    // Coleções da lista inteira e a posição do primeiro jogo de cada uma;
+    // lidas uma vez, em count()
+    private List<LibraryDatabase.ListedCollection> collections;
+    private int[] collectionStarts;
+
+    /**
+     * @param database Índice persistente
+     * @param rootUri URI da pasta escolhida pelo usuário
+     * @param sourceDocumentIds Jogos a exibir ou null para todos
+     * @param collectionUris Cache das URIs das coleções, reaproveitado entre listas
+     */
+    public GamePagingSource(LibraryDatabase database, String rootUri, List<String> sourceDocumentIds,
+                            Map<String, Uri> collectionUris) {
+        this.database = database;
+        this.rootUri = rootUri;
+        this.sourceDocumentIds = sourceDocumentIds;
+        this.collectionUris = collectionUris;
+    }
+
+    /**
+     * @return true se a lista é um resultado de busca
+     */
+    public boolean isFiltered() {
+        return sourceDocumentIds != null;
+    }
+
+    /**
+     * @return Quantidade total de jogos da lista
+     */
+    public int count() {
+        if (sourceDocumentIds != null) {
+            return sourceDocumentIds.size();
+        }
+        collections = database.getListedCollections(rootUri);
+        collectionStarts = new int[collections.size()];
+        int total = 0;
+        for (int i = 0; i < collections.size(); i++) {
+            collectionStarts[i] = total;
+            total += collections.get(i).listedCount;
+        }
+        return total;
+    }
+
+    /**
+     * Lê uma janela da lista
+     * @param start Posição do primeiro jogo
+     * @param count Quantidade de jogos
+     * @return Jogos lidos; pode vir menor se o índice mudou desde count()
+     */
+    public List<Game> load(int start, int count) {
+        List<LibraryDatabase.ListedGame> rows;
+        if (sourceDocumentIds != null) {
+            int end = Math.min(start + count, sourceDocumentIds.size());
+            rows = start < end
+                    ? database.getListedGames(rootUri, sourceDocumentIds.subList(start, end))
+                    : new ArrayList<>();
+        } else {
+            rows = loadListed(start, count);
+        }
+
+        List<Game> games = new ArrayList<>(rows.size());
+        for (LibraryDatabase.ListedGame row : rows) {
+            games.add(toGame(row));
+        }
+        return games;
+    }
+
+    /**
+     * Lê uma janela da lista inteira coleção a coleção: a posição vira
+     * (coleção, posição na coleção) pelos totais lidos em count(), e cada
+     * coleção é lida direto do índice a partir dessa posição
+     */
+    private List<LibraryDatabase.ListedGame> loadListed(int start, int count) {
+        List<LibraryDatabase.ListedGame> rows = new ArrayList<>(count);
+        if (collections == null) {
+            count();
+        }
+        int index = Arrays.binarySearch(collectionStarts, start);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        // Coleções vazias não entram na lista, então cada início é único
+        int fromIndex = start - (index >= 0 ? collectionStarts[index] : 0);
+        for (int i = Math.max(index, 0); i < collections.size() && rows.size() < count; i++) {
+            List<LibraryDatabase.ListedGame> part = database.getListedGames(collections.get(i), fromIndex,
+                    count - rows.size());
+            rows.addAll(part);
+            fromIndex = 0;
+        }
+        return rows;
+    }
+
+    private Game toGame(LibraryDatabase.ListedGame row) {
+        Uri collectionUri = collectionUris.get(row.treeUri);
+        if (collectionUri == null) {
+            collectionUri = Uri.parse(row.treeUri);
+            collectionUris.put(row.treeUri, collectionUri);
+        }
+
+        Game game = new Game(row.name);
+        game.setId(row.id);
+        game.setSourceDocumentId(row.sourceDocumentId);
+        game.setCollectionUri(collectionUri);
+        game.setCollectionName(row.consoleName);
+        game.setFirstOfCollection(row.firstOfCollection);
+        // O índice já sabe se há pasta e boxFront.png: a lista não precisa conferir
+        game.setMediaDocuments(row.mediaDocumentId, row.boxFrontDocumentId, row.boxFrontLastModified);
+        return game;
+    }
+}
@@ -0,0 +1,210 @@
+package com.example.pegasusimagemanager;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Índice de busca sobre os nomes dos jogos. Os nomes são normalizados
+ * (minúsculas, sem acentos) e cada trigrama aponta para os jogos que o
+ * contêm, então uma busca por trecho só confere os candidatos em vez da
+ * lista inteira. O índice também guarda quais jogos têm boxFront, para que
+ * o filtro "sem capa" saia da mesma consulta.
+ * É mantido de forma incremental por sync() com os nomes do índice
+ * persistente; deve ser usado só na thread de apoio do adapter.
+ */
+public class GameSearchIndex {
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final int GRAM = 3;
+
+    // Por jogo indexado, na ordem em que recebeu o ID
+    private final List<String> keys = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<String> normalizedNames = new ArrayList<>();
+    private final Map<String, Integer> idsByKey = new HashMap<>();
+    private final Map<Long, Postings> grams = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final BitSet withImage = new BitSet();
+
+    // ID de cada posição da última lista sincronizada
+    private int[] order = new int[0];
+
+    /**
+     * Lista de IDs de jogos que contêm um trigrama, em ordem crescente
+     */
+    private static class Postings {
+        int[] ids = new int[4];
+        int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * Remove acentos e diferenças de maiúsculas/minúsculas
+     * @param text Texto original
+     * @return Texto normalizado usado no índice e nas consultas
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Acompanha a lista completa: indexa jogos novos ou renomeados, atualiza
+     * a presença da imagem e descarta os que saíram. Nomes já indexados não
+     * são processados de novo.
+     * @param games Registros de LibraryDatabase.getListedNames(), na ordem da lista
+     */
+    public void sync(List<LibraryDatabase.GameRecord> games) {
+        // IDs de jogos removidos não são reaproveitados: quando sobram
+        // muitos, recomeça o índice do zero
+        if (keys.size() > 2 * games.size() + 1024) {
+            clear();
+        }
+
+        BitSet seen = new BitSet(keys.size());
+        int[] nextOrder = new int[games.size()];
+
+        for (int i = 0; i < games.size(); i++) {
+            LibraryDatabase.GameRecord game = games.get(i);
+            String key = game.sourceDocumentId;
+            Integer id = idsByKey.get(key);
+            if (id == null || !names.get(id).equals(game.name)) {
+                if (id != null) {
+                    live.clear(id);
+                }
+                id = add(key, game.name);
+            }
+            withImage.set(id, game.boxFrontDocumentId != null);
+            seen.set(id);
+            nextOrder[i] = id;
+        }
+
+        // Jogos que não estão mais na lista
+        BitSet removed = (BitSet) live.clone();
+        removed.andNot(seen);
+        for (int id = removed.nextSetBit(0); id >= 0; id = removed.nextSetBit(id + 1)) {
+            live.clear(id);
+            idsByKey.remove(keys.get(id));
+        }
+        order = nextOrder;
+    }
+
+    public void clear() {
+        keys.clear();
+        names.clear();
+        normalizedNames.clear();
+        idsByKey.clear();
+        grams.clear();
+        live.clear();
+        withImage.clear();
+        order = new int[0];
+    }
+
+    private int add(String key, String name) {
+        int id = keys.size();
+        String normalized = normalize(name);
+        keys.add(key);
+        names.add(name);
+        normalizedNames.add(normalized);
+        idsByKey.put(key, id);
+        live.set(id);
+
+        for (int i = 0; i + GRAM <= normalized.length(); i++) {
+            long gram = gramAt(normalized, i);
+            Postings postings = grams.get(gram);
+            if (postings == null) {
+                postings = new Postings();
+                grams.put(gram, postings);
+            }
+            // Um trigrama repetido no mesmo nome entra uma vez só
+            if (postings.size == 0 || postings.ids[postings.size - 1] != id) {
+                postings.add(id);
+            }
+        }
+        return id;
+    }
+
+    private static long gramAt(String text, int start) {
+        return ((long) text.charAt(start) << 32)
+                | ((long) text.charAt(start + 1) << 16)
+                | text.charAt(start + 2);
+    }
+
+    /**
+     * Filtra a última lista sincronizada
+     * @param query Trecho do nome; vazio aceita todos
+     * @param missingImageOnly true para manter só jogos sem boxFront
+     * @return IDs dos documentos de origem dos jogos encontrados, na ordem da lista
+     */
+    public List<String> filter(String query, boolean missingImageOnly) {
+        BitSet matches = search(normalize(query).trim());
+        if (missingImageOnly) {
+            matches.andNot(withImage);
+        }
+
+        List<String> result = new ArrayList<>();
+        for (int id : order) {
+            if (matches.get(id)) {
+                result.add(keys.get(id));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return IDs vivos cujo nome contém a consulta
+     */
+    private BitSet search(String query) {
+        BitSet result = (BitSet) live.clone();
+        if (query.isEmpty()) {
+            return result;
+        }
+
+        if (query.length() >= GRAM) {
+            // Cruza as listas dos trigramas da consulta, da menor para a maior
+            List<Postings> lists = new ArrayList<>();
+            for (int i = 0; i + GRAM <= query.length(); i++) {
+                Postings postings = grams.get(gramAt(query, i));
+                if (postings == null) {
+                    return new BitSet();
+                }
+                lists.add(postings);
+            }
+            lists.sort((a, b) -> Integer.compare(a.size, b.size));
+            for (Postings postings : lists) {
+                BitSet ids = new BitSet();
+                for (int i = 0; i < postings.size; i++) {
+                    ids.set(postings.ids[i]);
+                }
+                result.and(ids);
+                if (result.isEmpty()) {
+                    return result;
+                }
+            }
+        }
+
+        // Os trigramas podem estar fora de ordem no nome: confere o trecho.
+        // Consultas de uma ou duas letras caem direto aqui.
+        for (int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1)) {
+            if (!normalizedNames.get(id).contains(query)) {
+                result.clear(id);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.pegasusimagemanager;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Cache;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Cliente HTTP único do app. Todas as telas compartilham o mesmo pool de
+ * conexões (HTTP/2 quando o servidor aceita) e o mesmo cache em disco, então
+ * uma busca não paga de novo a abertura da conexão TLS e respostas já vistas
+ * são revalidadas por ETag/Last-Modified em vez de baixadas outra vez. As
+ * respostas da API da SteamGridDB ficam fora deste cache (no-store): quem as
+ * guarda é o SteamGridDbCache.
+ */
+public class HttpClientProvider {
+    private static final String TAG = "HttpClientProvider";
+    private static final String CACHE_DIRECTORY = "http_cache";
+    private static final long CACHE_SIZE = 50L * 1024 * 1024;
+
+    private static OkHttpClient client;
+
+    private HttpClientProvider() {
+    }
+
+    /**
+     * @param context Qualquer contexto; só o da aplicação é guardado
+     * @return Cliente compartilhado, criado na primeira chamada
+     */
+    public static synchronized OkHttpClient getClient(Context context) {
+        if (client == null) {
+            Context appContext = context.getApplicationContext();
+            client = new OkHttpClient.Builder()
+                    .connectTimeout(30, TimeUnit.SECONDS)
+                    .readTimeout(30, TimeUnit.SECONDS)
+                    .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                    .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                    .cache(new Cache(new File(appContext.getCacheDir(), CACHE_DIRECTORY), CACHE_SIZE))
+                    .addNetworkInterceptor(chain -> revalidateWithoutCacheControl(chain.proceed(chain.request())))
+                    .build();
+        }
+        return client;
+    }
+
+    /**
+     * Respostas sem Cache-Control mas com validadores seriam descartadas pelo
+     * cache; marcadas como no-cache, são guardadas e sempre revalidadas
+     * (a resposta 304 não traz o corpo de novo)
+     */
+    private static Response revalidateWithoutCacheControl(Response response) {
+        boolean hasValidator = response.header("ETag") != null || response.header("Last-Modified") != null;
+        if (response.header("Cache-Control") == null && hasValidator) {
+            return response.newBuilder()
+                    .header("Cache-Control", "no-cache")
+                    .build();
+        }
+        return response;
+    }
+
+    /**
+     * Abre a conexão com um servidor em segundo plano, para que a primeira
+     * requisição de verdade já encontre a conexão TLS pronta no pool
+     * @param context Qualquer contexto
+     * @param url Endereço no servidor a aquecer
+     */
+    public static void warmUp(Context context, String url) {
+        Request request = new Request.Builder()
+                .url(url)
+                .head()
+                .build();
+        getClient(context).newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                Log.d(TAG, "Falha ao aquecer conexão: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                // Só a conexão interessa: o status da resposta é ignorado
+                response.close();
+            }
+        });
+    }
+}
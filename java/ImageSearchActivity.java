@@ -5,6 +5,7 @@ import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.provider.DocumentsContract;
 import android.view.View;
 import android.widget.LinearLayout;
 import android.widget.ProgressBar;
@@ -20,7 +21,6 @@ import com.bumptech.glide.Glide;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
 import java.util.List;
 
 import okhttp3.Call;
@@ -31,6 +31,10 @@ public class ImageSearchActivity extends AppCompatActivity implements CoverAdapt
     
     public static final String EXTRA_GAME_NAME = "game_name";
     public static final String EXTRA_PEGASUS_FOLDER_URI = "pegasus_folder_uri";
+    // Resultado: pasta e capa gravadas, para a lista trocar a miniatura sem reler a pasta
+    public static final String EXTRA_MEDIA_DOCUMENT_ID = "media_document_id";
+    public static final String EXTRA_IMAGE_DOCUMENT_ID = "image_document_id";
+    public static final String EXTRA_IMAGE_LAST_MODIFIED = "image_last_modified";
     
     private RecyclerView recyclerViewCovers;
     private ProgressBar progressBar;
@@ -39,12 +43,21 @@ public class ImageSearchActivity extends AppCompatActivity implements CoverAdapt
     private LinearLayout layoutLoading;
     private LinearLayout layoutContent;
     private LinearLayout layoutError;
+    private TextView tvGridGame;
     private CoverAdapter adapter;
     
     private String gameName;
     private Uri pegasusFolderUri;
     private SteamGridDbApi steamGridDbApi;
+    private GameIdStore gameIdStore;
     private Handler mainHandler;
+    // Jogo da SteamGridDB cujas capas estão na grade; só a thread principal acessa
+    private int gridGameId;
+    private String gridGameName;
+    // O jogo veio do GameIdStore
+    private boolean gridGameStored;
+    // Escolhido pelo usuário ou sem ambiguidade na busca: só então é guardado
+    private boolean gridGameConfirmed;
     
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -64,6 +77,7 @@ public class ImageSearchActivity extends AppCompatActivity implements CoverAdapt
         
         mainHandler = new Handler(Looper.getMainLooper());
         steamGridDbApi = new SteamGridDbApi(this);
+        gameIdStore = GameIdStore.getInstance(this);
         
         searchCovers();
     }
@@ -76,6 +90,9 @@ public class ImageSearchActivity extends AppCompatActivity implements CoverAdapt
         layoutLoading = findViewById(R.id.layoutLoading);
         layoutContent = findViewById(R.id.layoutContent);
         layoutError = findViewById(R.id.layoutError);
+        tvGridGame = findViewById(R.id.tvGridGame);
+        findViewById(R.id.btnSearchAgain).setOnClickListener(v -> searchAgain());
+        findViewById(R.id.btnRetry).setOnClickListener(v -> searchCovers());
         
         recyclerViewCovers.setLayoutManager(new GridLayoutManager(this, 2));
     }
@@ -100,6 +117,32 @@ public class ImageSearchActivity extends AppCompatActivity implements CoverAdapt
             return;
         }
         
+        // Jogo já escolhido antes para este nome: vai direto às capas
+        gameIdStore.lookup(gameName, mapping -> {
+            if (mapping != null) {
+                loadGrids(mapping.toGameResult(), true, true);
+            } else {
+                searchGame(false);
+            }
+        });
+    }
+    
+    /**
+     * Esquece o jogo guardado para o nome e busca de novo, deixando o
+     * usuário escolher quando a busca traz vários jogos
+     */
+    private void searchAgain() {
+        gameIdStore.remove(gameName);
+        showLoading(true);
+        tvSearchStatus.setText("Buscando jogos...");
+        searchGame(true);
+    }
+    
+    /**
+     * @param choose true para perguntar ao usuário quando nenhum resultado
+     *               tem o mesmo nome; false para usar o primeiro sem guardá-lo
+     */
+    private void searchGame(boolean choose) {
         steamGridDbApi.searchGames(gameName, new SteamGridDbApi.SearchCallback() {
             @Override
             public void onSuccess(List<SteamGridDbResponse.GameResult> games) {
@@ -108,37 +151,83 @@ public class ImageSearchActivity extends AppCompatActivity implements CoverAdapt
                     return;
                 }
                 
-                // Pegar o primeiro resultado
-                SteamGridDbResponse.GameResult selectedGame = games.get(0);
-                
+                SteamGridDbResponse.GameResult exact = SteamGridDbApi.findExactMatch(gameName, games);
+                if (exact != null || games.size() == 1) {
+                    loadGrids(exact != null ? exact : games.get(0), false, true);
+                } else if (choose) {
+                    mainHandler.post(() -> showGameChooser(games));
+                } else {
+                    // Primeiro resultado, o mais relevante; não é guardado
+                    loadGrids(games.get(0), false, false);
+                }
+            }
+            
+            @Override
+            public void onError(String error) {
+                mainHandler.post(() -> showError("Erro na busca: " + error));
+            }
+        });
+    }
+    
+    private void showGameChooser(List<SteamGridDbResponse.GameResult> games) {
+        if (isFinishing() || isDestroyed()) {
+            return;
+        }
+        String[] names = new String[games.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = games.get(i).getName();
+        }
+        new android.app.AlertDialog.Builder(this)
+                .setTitle(R.string.choose_game)
+                .setItems(names, (dialog, which) -> loadGrids(games.get(which), false, true))
+                .setOnCancelListener(dialog -> loadGrids(games.get(0), false, false))
+                .show();
+    }
+    
+    /**
+     * @param selectedGame Jogo da SteamGridDB
+     * @param stored true se o jogo veio do GameIdStore; sem capas, volta à busca
+     * @param confirmed true se o jogo pode ser guardado quando uma capa for salva
+     */
+    private void loadGrids(SteamGridDbResponse.GameResult selectedGame, boolean stored, boolean confirmed) {
+        // Chamado também nas threads do store e do OkHttp: os campos mudam na
+        // thread principal, antes de as capas chegarem pela mesma fila
+        mainHandler.post(() -> {
+            gridGameId = selectedGame.getId();
+            gridGameName = selectedGame.getName();
+            gridGameStored = stored;
+            gridGameConfirmed = confirmed;
+            tvSearchStatus.setText("Buscando capas...");
+            tvGridGame.setText(getString(R.string.cover_game_name, selectedGame.getName()));
+        });
+        
+        // Buscar capas para o jogo
+        steamGridDbApi.getGameGrids(selectedGame.getId(), 0, new SteamGridDbApi.GridCallback() {
+            @Override
+            public void onSuccess(List<SteamGridDbResponse.GridResult> grids) {
+                if (grids.isEmpty() && stored) {
+                    // O ID guardado não tem capas: deixa de valer e a busca decide
+                    gameIdStore.remove(gameName);
+                    searchGame(false);
+                    return;
+                }
                 mainHandler.post(() -> {
-                    tvSearchStatus.setText("Buscando capas...");
-                });
-                
-                // Buscar capas para o jogo
-                steamGridDbApi.getGameGrids(selectedGame.getId(), new SteamGridDbApi.GridCallback() {
-                    @Override
-                    public void onSuccess(List<SteamGridDbResponse.GridResult> grids) {
-                        mainHandler.post(() -> {
-                            showLoading(false);
-                            if (grids.isEmpty()) {
-                                showError("Nenhuma capa encontrada");
-                            } else {
-                                showCovers(grids);
-                            }
-                        });
-                    }
-                    
-                    @Override
-                    public void onError(String error) {
-                        mainHandler.post(() -> showError("Erro ao buscar capas: " + error));
+                    showLoading(false);
+                    if (grids.isEmpty()) {
+                        showError("Nenhuma capa encontrada");
+                    } else {
+                        showCovers(grids);
                     }
                 });
             }
             
             @Override
             public void onError(String error) {
-                mainHandler.post(() -> showError("Erro na busca: " + error));
+                if (stored) {
+                    searchGame(false);
+                    return;
+                }
+                mainHandler.post(() -> showError("Erro ao buscar capas: " + error));
             }
         });
     }
@@ -160,8 +249,36 @@ public class ImageSearchActivity extends AppCompatActivity implements CoverAdapt
         layoutLoading.setVisibility(View.GONE);
         layoutContent.setVisibility(View.VISIBLE);
         layoutError.setVisibility(View.GONE);
-        adapter = new CoverAdapter(this, covers, this);
+        adapter = new CoverAdapter(this, SteamGridDbApi.GRID_PAGE_SIZE, this, this::loadCoverPage);
         recyclerViewCovers.setAdapter(adapter);
+        adapter.onPageLoaded(0, covers);
+    }
+    
+    /**
+     * Pede uma página de capas para a grade: a próxima, quando a rolagem
+     * chega perto do fim, ou uma descartada, quando a rolagem volta
+     */
+    private void loadCoverPage(int page) {
+        CoverAdapter pageAdapter = adapter;
+        steamGridDbApi.getGameGrids(gridGameId, page, new SteamGridDbApi.GridCallback() {
+            @Override
+            public void onSuccess(List<SteamGridDbResponse.GridResult> grids) {
+                mainHandler.post(() -> {
+                    if (adapter == pageAdapter) {
+                        adapter.onPageLoaded(page, grids);
+                    }
+                });
+            }
+            
+            @Override
+            public void onError(String error) {
+                mainHandler.post(() -> {
+                    if (adapter == pageAdapter) {
+                        adapter.onPageFailed(page);
+                    }
+                });
+            }
+        });
     }
     
     @Override
@@ -169,6 +286,11 @@ public class ImageSearchActivity extends AppCompatActivity implements CoverAdapt
         showLoading(true);
         tvSearchStatus.setText("Baixando imagem...");
         
+        // O download termina na thread do OkHttp: leva o jogo da grade deste toque
+        boolean rememberGame = gridGameConfirmed && !gridGameStored;
+        int savedGameId = gridGameId;
+        String savedGameName = gridGameName;
+        
         steamGridDbApi.downloadImage(cover.getUrl(), new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
@@ -193,35 +315,9 @@ public class ImageSearchActivity extends AppCompatActivity implements CoverAdapt
                 }
                 
                 try {
-                    // Criar diretório /media/nomedojogo/
-                    DocumentFile pegasusFolder = DocumentFile.fromTreeUri(ImageSearchActivity.this, pegasusFolderUri);
-                    if (pegasusFolder == null) {
-                        mainHandler.post(() -> {
-                            showLoading(false);
-                            Toast.makeText(ImageSearchActivity.this, 
-                                "Erro ao acessar pasta", Toast.LENGTH_SHORT).show();
-                        });
-                        return;
-                    }
-                    
-                    DocumentFile mediaFolder = pegasusFolder.findFile("media");
-                    if (mediaFolder == null || !mediaFolder.isDirectory()) {
-                        mediaFolder = pegasusFolder.createDirectory("media");
-                    }
-                    
-                    if (mediaFolder == null) {
-                        mainHandler.post(() -> {
-                            showLoading(false);
-                            Toast.makeText(ImageSearchActivity.this, 
-                                "Erro ao criar pasta media", Toast.LENGTH_SHORT).show();
-                        });
-                        return;
-                    }
-                    
-                    DocumentFile gameFolder = mediaFolder.findFile(gameName);
-                    if (gameFolder == null || !gameFolder.isDirectory()) {
-                        gameFolder = mediaFolder.createDirectory(gameName);
-                    }
+                    // Cria /media/nomedojogo/ só agora, na primeira imagem do jogo
+                    DocumentFile gameFolder = FileHelper.createGameMediaDirectory(
+                            ImageSearchActivity.this, pegasusFolderUri, gameName);
                     
                     if (gameFolder == null) {
                         mainHandler.post(() -> {
@@ -232,13 +328,11 @@ public class ImageSearchActivity extends AppCompatActivity implements CoverAdapt
                         return;
                     }
                     
-                    // Criar arquivo boxFront.png
-                    DocumentFile existingFile = gameFolder.findFile("boxFront.png");
-                    if (existingFile != null && existingFile.isFile()) {
-                        existingFile.delete();
+                    // Grava boxFront.png, substituindo o anterior, com a listagem da pasta
+                    DocumentFile imageFile;
+                    try (InputStream inputStream = response.body().byteStream()) {
+                        imageFile = FileHelper.writeBoxFrontImage(ImageSearchActivity.this, gameFolder, inputStream);
                     }
-                    
-                    DocumentFile imageFile = gameFolder.createFile("image/png", "boxFront.png");
                     if (imageFile == null) {
                         mainHandler.post(() -> {
                             showLoading(false);
@@ -248,32 +342,23 @@ public class ImageSearchActivity extends AppCompatActivity implements CoverAdapt
                         return;
                     }
                     
-                    // Copiar dados da imagem
-                    try (InputStream inputStream = response.body().byteStream();
-                         OutputStream outputStream = getContentResolver().openOutputStream(imageFile.getUri())) {
-                        
-                        if (outputStream == null) {
-                            mainHandler.post(() -> {
-                                showLoading(false);
-                                Toast.makeText(ImageSearchActivity.this, 
-                                    "Erro ao abrir arquivo para escrita", Toast.LENGTH_SHORT).show();
-                            });
-                            return;
-                        }
-                        
-                        byte[] buffer = new byte[8192];
-                        int bytesRead;
-                        while ((bytesRead = inputStream.read(buffer)) != -1) {
-                            outputStream.write(buffer, 0, bytesRead);
-                        }
-                        
-                        mainHandler.post(() -> {
-                            showLoading(false);
-                            Toast.makeText(ImageSearchActivity.this, 
-                                "Imagem salva com sucesso!", Toast.LENGTH_SHORT).show();
-                            finish();
-                        });
+                    // Capa confirmada de um jogo sem ambiguidade: as próximas
+                    // buscas deste nome pulam a busca do jogo
+                    if (rememberGame) {
+                        gameIdStore.put(gameName, savedGameId, savedGameName);
                     }
+                    
+                    Intent result = new Intent();
+                    result.putExtra(EXTRA_MEDIA_DOCUMENT_ID, DocumentsContract.getDocumentId(gameFolder.getUri()));
+                    result.putExtra(EXTRA_IMAGE_DOCUMENT_ID, DocumentsContract.getDocumentId(imageFile.getUri()));
+                    result.putExtra(EXTRA_IMAGE_LAST_MODIFIED, FileHelper.writtenLastModified(imageFile));
+                    mainHandler.post(() -> {
+                        showLoading(false);
+                        Toast.makeText(ImageSearchActivity.this, 
+                            "Imagem salva com sucesso!", Toast.LENGTH_SHORT).show();
+                        setResult(RESULT_OK, result);
+                        finish();
+                    });
                 } catch (Exception e) {
                     mainHandler.post(() -> {
                         showLoading(false);
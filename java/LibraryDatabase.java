@@ -0,0 +1,622 @@
+package com.example.pegasusimagemanager;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Índice persistente da biblioteca. Guarda o resultado da última leitura de
+ * cada pasta Pegasus para que a abertura do app não precise reler o
+ * metadata.pegasus.txt e os arquivos .desktop que não mudaram.
+ */
+public class LibraryDatabase extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "library.db";
+    private static final int DATABASE_VERSION = 6;
+
+    private static final String TABLE_COLLECTIONS = "collections";
+    private static final String TABLE_GAMES = "games";
+
+    private static final String[] COLLECTION_COLUMNS = {"_id", "tree_uri", "root_uri", "console_name",
+            "metadata_document_id", "metadata_last_modified", "metadata_size", "games_in_metadata",
+            "listed_count"};
+
+    // Jogos exibidos na lista de uma raiz, na ordem da lista: coleções pelo
+    // nome do console e, dentro de cada uma, a ordem da leitura
+    private static final String LISTED_GAMES_FROM = " FROM " + TABLE_GAMES + " g JOIN " + TABLE_COLLECTIONS
+            + " c ON g.collection_id = c._id"
+            + " WHERE c.root_uri = ? AND c.console_name IS NOT NULL AND g.name IS NOT NULL";
+    private static final String LISTED_GAMES_ORDER = " ORDER BY c.console_name COLLATE NOCASE, c.tree_uri, g.list_index";
+    private static final String LISTED_GAME_COLUMNS = "SELECT c.tree_uri, c.console_name, g.source_document_id,"
+            + " g.name, g.media_document_id, g.box_front_document_id, g.box_front_last_modified, g.list_index, g._id";
+    // Uma página dentro de uma coleção: busca direta no índice games_listed,
+    // sem ordenar a lista inteira nem pular linhas com OFFSET
+    private static final String LISTED_PAGE_QUERY = "SELECT NULL, NULL, source_document_id, name, media_document_id,"
+            + " box_front_document_id, box_front_last_modified, list_index, _id FROM " + TABLE_GAMES
+            + " WHERE collection_id = ? AND list_index >= ? ORDER BY list_index LIMIT ?";
+
+    private static LibraryDatabase instance;
+
+    /**
+     * Coleção indexada (uma pasta com metadata.pegasus.txt)
+     */
+    public static class CollectionRecord {
+        public long id;
+        public String treeUri;
+        // Pasta escolhida pelo usuário; igual a treeUri quando ela é a própria coleção
+        public String rootUri;
+        public String consoleName;
+        public String metadataDocumentId;
+        public long metadataLastModified;
+        public long metadataSize;
+        // Os jogos vêm das entradas "game:" do metadata, não de arquivos .desktop
+        public boolean gamesInMetadata;
+        // Jogos com nome, mantido a cada gravação para que a lista não precise contá-los
+        public int listedCount;
+
+        /**
+         * @param entry Entrada atual do metadata.pegasus.txt
+         * @return true se o arquivo não mudou desde a última leitura
+         */
+        public boolean matchesMetadata(DocumentScanner.Entry entry) {
+            return entry != null
+                    && entry.getDocumentId().equals(metadataDocumentId)
+                    && entry.getLastModified() == metadataLastModified
+                    && entry.getSize() == metadataSize;
+        }
+    }
+
+    /**
+     * Arquivo .desktop (ou entrada "game:" do metadata) indexado. Arquivos sem
+     * nome de jogo também são guardados (com name nulo) para não serem relidos.
+     * A data da pasta de mídia indica quando o boxFront.png precisa ser
+     * conferido de novo; a data do boxFront.png invalida a miniatura da capa.
+     */
+    public static class GameRecord {
+        public String sourceDocumentId;
+        public long sourceLastModified;
+        public long sourceSize;
+        public int position;
+        public String name;
+        public String mediaDocumentId;
+        public long mediaLastModified;
+        public String boxFrontDocumentId;
+        public long boxFrontLastModified;
+
+        /**
+         * @param entry Entrada atual do arquivo .desktop
+         * @return true se o arquivo não mudou desde a última leitura
+         */
+        public boolean matches(DocumentScanner.Entry entry) {
+            return entry.getDocumentId().equals(sourceDocumentId)
+                    && entry.getLastModified() == sourceLastModified
+                    && entry.getSize() == sourceSize;
+        }
+    }
+
+    /**
+     * Linha da lista de jogos de uma raiz, com os dados da coleção
+     */
+    public static class ListedGame {
+        // _id da linha em games: não muda entre leituras da coleção
+        public long id;
+        public String treeUri;
+        public String consoleName;
+        public String sourceDocumentId;
+        public String name;
+        public String mediaDocumentId;
+        public String boxFrontDocumentId;
+        public long boxFrontLastModified;
+        // Primeiro jogo da coleção na lista, que leva o cabeçalho
+        public boolean firstOfCollection;
+    }
+
+    /**
+     * Pasta de mídia e boxFront.png de um jogo, para gravar em lote
+     */
+    public static class MediaUpdate {
+        public final String treeUri;
+        public final String sourceDocumentId;
+        public final String mediaDocumentId;
+        public final String boxFrontDocumentId;
+        public final long boxFrontLastModified;
+
+        public MediaUpdate(String treeUri, String sourceDocumentId, String mediaDocumentId,
+                           String boxFrontDocumentId, long boxFrontLastModified) {
+            this.treeUri = treeUri;
+            this.sourceDocumentId = sourceDocumentId;
+            this.mediaDocumentId = mediaDocumentId;
+            this.boxFrontDocumentId = boxFrontDocumentId;
+            this.boxFrontLastModified = boxFrontLastModified;
+        }
+    }
+
+    /**
+     * Coleção de uma página da lista: de onde ler e quantos jogos ela tem
+     */
+    public static class ListedCollection {
+        public long id;
+        public String treeUri;
+        public String consoleName;
+        public int listedCount;
+    }
+
+    public static synchronized LibraryDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new LibraryDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private LibraryDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_COLLECTIONS + " ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "tree_uri TEXT NOT NULL UNIQUE, "
+                + "root_uri TEXT, "
+                + "console_name TEXT, "
+                + "metadata_document_id TEXT, "
+                + "metadata_last_modified INTEGER NOT NULL DEFAULT 0, "
+                + "metadata_size INTEGER NOT NULL DEFAULT 0, "
+                + "games_in_metadata INTEGER NOT NULL DEFAULT 0, "
+                + "listed_count INTEGER NOT NULL DEFAULT 0)");
+
+        db.execSQL("CREATE TABLE " + TABLE_GAMES + " ("
+                + "_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "collection_id INTEGER NOT NULL REFERENCES " + TABLE_COLLECTIONS + "(_id) ON DELETE CASCADE, "
+                + "source_document_id TEXT NOT NULL, "
+                + "source_last_modified INTEGER NOT NULL DEFAULT 0, "
+                + "source_size INTEGER NOT NULL DEFAULT 0, "
+                + "position INTEGER NOT NULL DEFAULT 0, "
+                + "name TEXT, "
+                + "media_document_id TEXT, "
+                + "media_last_modified INTEGER NOT NULL DEFAULT 0, "
+                + "box_front_document_id TEXT, "
+                + "box_front_last_modified INTEGER NOT NULL DEFAULT 0, "
+                // Posição na lista da coleção (0, 1, 2...) ou null se o jogo não tem nome
+                + "list_index INTEGER, "
+                + "UNIQUE(collection_id, source_document_id))");
+
+        db.execSQL("CREATE INDEX collections_root ON " + TABLE_COLLECTIONS + "(root_uri)");
+        db.execSQL("CREATE INDEX games_collection_position ON " + TABLE_GAMES + "(collection_id, position)");
+        db.execSQL("CREATE INDEX games_listed ON " + TABLE_GAMES + "(collection_id, list_index)"
+                + " WHERE list_index IS NOT NULL");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // O índice é só um cache: pode ser reconstruído com uma nova leitura
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_GAMES);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_COLLECTIONS);
+        onCreate(db);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.setForeignKeyConstraintsEnabled(true);
+    }
+
+    /**
+     * Obtém a coleção indexada de uma pasta
+     * @param treeUri URI da árvore da pasta Pegasus
+     * @return Coleção ou null se a pasta nunca foi indexada
+     */
+    public CollectionRecord getCollection(String treeUri) {
+        try (Cursor cursor = getReadableDatabase().query(TABLE_COLLECTIONS, COLLECTION_COLUMNS,
+                "tree_uri = ?", new String[]{treeUri}, null, null, null)) {
+            return cursor.moveToFirst() ? readCollection(cursor) : null;
+        }
+    }
+
+    /**
+     * Obtém as coleções encontradas abaixo de uma pasta raiz
+     * @param rootUri URI da pasta escolhida pelo usuário
+     * @return Coleções em ordem alfabética do nome do console
+     */
+    public List<CollectionRecord> getCollections(String rootUri) {
+        List<CollectionRecord> collections = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_COLLECTIONS, COLLECTION_COLUMNS,
+                "root_uri = ?", new String[]{rootUri}, null, null,
+                "console_name COLLATE NOCASE, tree_uri")) {
+            while (cursor.moveToNext()) {
+                collections.add(readCollection(cursor));
+            }
+        }
+        return collections;
+    }
+
+    private CollectionRecord readCollection(Cursor cursor) {
+        CollectionRecord record = new CollectionRecord();
+        record.id = cursor.getLong(0);
+        record.treeUri = cursor.getString(1);
+        record.rootUri = cursor.getString(2);
+        record.consoleName = cursor.getString(3);
+        record.metadataDocumentId = cursor.getString(4);
+        record.metadataLastModified = cursor.getLong(5);
+        record.metadataSize = cursor.getLong(6);
+        record.gamesInMetadata = cursor.getInt(7) != 0;
+        record.listedCount = cursor.getInt(8);
+        return record;
+    }
+
+    /**
+     * Obtém os arquivos .desktop indexados de uma coleção, na ordem da leitura
+     * @param collectionId ID da coleção
+     * @return Mapa ID do documento → registro
+     */
+    public Map<String, GameRecord> getGames(long collectionId) {
+        Map<String, GameRecord> games = new LinkedHashMap<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_GAMES,
+                new String[]{"source_document_id", "source_last_modified", "source_size", "position",
+                        "name", "media_document_id", "media_last_modified", "box_front_document_id",
+                        "box_front_last_modified"},
+                "collection_id = ?", new String[]{String.valueOf(collectionId)},
+                null, null, "position")) {
+            while (cursor.moveToNext()) {
+                GameRecord record = new GameRecord();
+                record.sourceDocumentId = cursor.getString(0);
+                record.sourceLastModified = cursor.getLong(1);
+                record.sourceSize = cursor.getLong(2);
+                record.position = cursor.getInt(3);
+                record.name = cursor.getString(4);
+                record.mediaDocumentId = cursor.getString(5);
+                record.mediaLastModified = cursor.getLong(6);
+                record.boxFrontDocumentId = cursor.getString(7);
+                record.boxFrontLastModified = cursor.getLong(8);
+                games.put(record.sourceDocumentId, record);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Substitui o índice de uma coleção pelo resultado de uma nova leitura
+     * @param collection Dados da coleção (o id e o listedCount são preenchidos)
+     * @param games Arquivos .desktop lidos, na ordem da lista
+     */
+    public void saveLibrary(CollectionRecord collection, List<GameRecord> games) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put("tree_uri", collection.treeUri);
+            values.put("root_uri", collection.rootUri);
+            values.put("console_name", collection.consoleName);
+            values.put("metadata_document_id", collection.metadataDocumentId);
+            values.put("metadata_last_modified", collection.metadataLastModified);
+            values.put("metadata_size", collection.metadataSize);
+            values.put("games_in_metadata", collection.gamesInMetadata ? 1 : 0);
+            collection.listedCount = 0;
+            for (GameRecord game : games) {
+                if (game.name != null) {
+                    collection.listedCount++;
+                }
+            }
+            values.put("listed_count", collection.listedCount);
+
+            // Arquivos que sumiram desde a gravação anterior
+            Set<String> removed = new HashSet<>();
+            CollectionRecord existing = getCollection(collection.treeUri);
+            if (existing != null) {
+                collection.id = existing.id;
+                db.update(TABLE_COLLECTIONS, values, "_id = ?", new String[]{String.valueOf(existing.id)});
+                removed.addAll(getGames(existing.id).keySet());
+            } else {
+                collection.id = db.insertOrThrow(TABLE_COLLECTIONS, null, values);
+            }
+
+            int listIndex = 0;
+            for (GameRecord game : games) {
+                writeGame(db, values, collection.id, game, game.name != null ? listIndex++ : -1);
+                removed.remove(game.sourceDocumentId);
+            }
+            for (String sourceDocumentId : removed) {
+                db.delete(TABLE_GAMES, "collection_id = ? AND source_document_id = ?",
+                        new String[]{String.valueOf(collection.id), sourceDocumentId});
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Grava parte dos jogos de uma coleção ainda não indexada, para que a
+     * lista mostre os primeiros jogos enquanto a leitura continua. A coleção
+     * fica sem a impressão digital do metadata até o saveLibrary() final, então
+     * uma leitura interrompida é refeita por completo na próxima vez.
+     * @param collection Dados da coleção; na primeira chamada (id 0) o id é
+     *                   preenchido, e o listedCount acompanha os jogos gravados
+     * @param games Arquivos lidos desde a chamada anterior, na ordem da lista
+     */
+    public void appendGames(CollectionRecord collection, List<GameRecord> games) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            if (collection.id == 0) {
+                values.put("tree_uri", collection.treeUri);
+                values.put("root_uri", collection.rootUri);
+                values.put("console_name", collection.consoleName);
+                values.putNull("metadata_document_id");
+                values.put("metadata_last_modified", 0);
+                values.put("metadata_size", 0);
+                values.put("games_in_metadata", collection.gamesInMetadata ? 1 : 0);
+                values.put("listed_count", 0);
+                collection.listedCount = 0;
+
+                CollectionRecord existing = getCollection(collection.treeUri);
+                if (existing != null) {
+                    // Sobra de uma leitura interrompida: as linhas ficam (e mantêm
+                    // o ID) mas saem da lista até serem gravadas de novo
+                    collection.id = existing.id;
+                    db.update(TABLE_COLLECTIONS, values, "_id = ?", new String[]{String.valueOf(existing.id)});
+                    values.clear();
+                    values.putNull("list_index");
+                    db.update(TABLE_GAMES, values, "collection_id = ?", new String[]{String.valueOf(existing.id)});
+                } else {
+                    collection.id = db.insertOrThrow(TABLE_COLLECTIONS, null, values);
+                }
+            }
+
+            // Os jogos chegam em ordem: continuam a lista de onde a chamada anterior parou
+            int listed = collection.listedCount;
+
+            for (GameRecord game : games) {
+                writeGame(db, values, collection.id, game, game.name != null ? collection.listedCount++ : -1);
+            }
+
+            if (collection.listedCount != listed) {
+                values.clear();
+                values.put("listed_count", collection.listedCount);
+                db.update(TABLE_COLLECTIONS, values, "_id = ?", new String[]{String.valueOf(collection.id)});
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Atualiza a linha de um jogo no lugar, ou a cria se ele é novo. A linha
+     * nunca é apagada e recriada, para que o _id do jogo continue o mesmo
+     * entre leituras e sirva de ID estável na lista.
+     * @param values Reaproveitado entre as chamadas
+     * @param listIndex Posição na lista da coleção ou -1 se o jogo não tem nome
+     */
+    private void writeGame(SQLiteDatabase db, ContentValues values, long collectionId, GameRecord game,
+                           int listIndex) {
+        values.clear();
+        values.put("source_last_modified", game.sourceLastModified);
+        values.put("source_size", game.sourceSize);
+        values.put("position", game.position);
+        values.put("name", game.name);
+        values.put("media_document_id", game.mediaDocumentId);
+        values.put("media_last_modified", game.mediaLastModified);
+        values.put("box_front_document_id", game.boxFrontDocumentId);
+        values.put("box_front_last_modified", game.boxFrontLastModified);
+        if (listIndex >= 0) {
+            values.put("list_index", listIndex);
+        } else {
+            values.putNull("list_index");
+        }
+        int updated = db.update(TABLE_GAMES, values, "collection_id = ? AND source_document_id = ?",
+                new String[]{String.valueOf(collectionId), game.sourceDocumentId});
+        if (updated == 0) {
+            values.put("collection_id", collectionId);
+            values.put("source_document_id", game.sourceDocumentId);
+            db.insertOrThrow(TABLE_GAMES, null, values);
+        }
+    }
+
+    /**
+     * Atualiza a pasta de mídia e o boxFront.png de um jogo, depois que o
+     * app gravou uma imagem
+     * @param treeUri URI da coleção do jogo
+     * @param sourceDocumentId ID do documento de origem do jogo
+     * @param mediaDocumentId ID da pasta do jogo ou null
+     * @param boxFrontDocumentId ID do boxFront.png ou null
+     * @param boxFrontLastModified Data de modificação do boxFront.png
+     */
+    public void updateGameMedia(String treeUri, String sourceDocumentId, String mediaDocumentId,
+                                String boxFrontDocumentId, long boxFrontLastModified) {
+        ContentValues values = new ContentValues();
+        values.put("media_document_id", mediaDocumentId);
+        values.put("box_front_document_id", boxFrontDocumentId);
+        values.put("box_front_last_modified", boxFrontLastModified);
+        getWritableDatabase().update(TABLE_GAMES, values,
+                "source_document_id = ? AND collection_id = (SELECT _id FROM " + TABLE_COLLECTIONS
+                        + " WHERE tree_uri = ?)",
+                new String[]{sourceDocumentId, treeUri});
+    }
+
+    /**
+     * Grava a mídia de vários jogos numa única transação: fora de uma, cada
+     * UPDATE seria confirmado (e sincronizado em disco) separadamente
+     * @param updates Jogos a atualizar
+     */
+    public void updateGameMedia(List<MediaUpdate> updates) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (MediaUpdate update : updates) {
+                updateGameMedia(update.treeUri, update.sourceDocumentId, update.mediaDocumentId,
+                        update.boxFrontDocumentId, update.boxFrontLastModified);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * @param rootUri URI da pasta escolhida pelo usuário
+     * @return Quantidade de jogos exibidos na lista da raiz, somada dos
+     *         totais mantidos em cada coleção
+     */
+    public int countListedGames(String rootUri) {
+        try (Cursor cursor = getReadableDatabase().rawQuery("SELECT TOTAL(listed_count) FROM " + TABLE_COLLECTIONS
+                + " WHERE root_uri = ? AND console_name IS NOT NULL", new String[]{rootUri})) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
+        }
+    }
+
+    /**
+     * Obtém as coleções exibidas na lista de uma raiz, com o total de jogos
+     * de cada uma. A soma dos totais é o tamanho da lista, sem contar jogos.
+     * @param rootUri URI da pasta escolhida pelo usuário
+     * @return Coleções na ordem da lista
+     */
+    public List<ListedCollection> getListedCollections(String rootUri) {
+        List<ListedCollection> collections = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_COLLECTIONS,
+                new String[]{"_id", "tree_uri", "console_name", "listed_count"},
+                "root_uri = ? AND console_name IS NOT NULL AND listed_count > 0", new String[]{rootUri},
+                null, null, "console_name COLLATE NOCASE, tree_uri")) {
+            while (cursor.moveToNext()) {
+                ListedCollection collection = new ListedCollection();
+                collection.id = cursor.getLong(0);
+                collection.treeUri = cursor.getString(1);
+                collection.consoleName = cursor.getString(2);
+                collection.listedCount = cursor.getInt(3);
+                collections.add(collection);
+            }
+        }
+        return collections;
+    }
+
+    /**
+     * Lê uma janela da lista de uma coleção, a partir de uma posição
+     * @param collection Coleção, de getListedCollections()
+     * @param fromIndex Posição do primeiro jogo na coleção
+     * @param limit Quantidade máxima de jogos
+     * @return Jogos na ordem da lista
+     */
+    public List<ListedGame> getListedGames(ListedCollection collection, int fromIndex, int limit) {
+        List<ListedGame> games = new ArrayList<>(limit);
+        try (Cursor cursor = getReadableDatabase().rawQuery(LISTED_PAGE_QUERY,
+                new String[]{String.valueOf(collection.id), String.valueOf(fromIndex), String.valueOf(limit)})) {
+            while (cursor.moveToNext()) {
+                ListedGame game = readListedGame(cursor);
+                // Os dados da coleção já estão na memória: todos os jogos dela os compartilham
+                game.treeUri = collection.treeUri;
+                game.consoleName = collection.consoleName;
+                games.add(game);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Lê jogos específicos da lista de uma raiz, por exemplo o resultado de
+     * uma busca
+     * @param rootUri URI da pasta escolhida pelo usuário
+     * @param sourceDocumentIds IDs dos documentos de origem (até algumas centenas)
+     * @return Jogos na mesma ordem dos IDs; IDs que não existem mais são omitidos
+     */
+    public List<ListedGame> getListedGames(String rootUri, List<String> sourceDocumentIds) {
+        if (sourceDocumentIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        StringBuilder placeholders = new StringBuilder();
+        String[] args = new String[sourceDocumentIds.size() + 1];
+        args[0] = rootUri;
+        for (int i = 0; i < sourceDocumentIds.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ",?");
+            args[i + 1] = sourceDocumentIds.get(i);
+        }
+
+        Map<String, ListedGame> byId = new HashMap<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(LISTED_GAME_COLUMNS + LISTED_GAMES_FROM
+                + " AND g.source_document_id IN (" + placeholders + ")", args)) {
+            while (cursor.moveToNext()) {
+                ListedGame game = readListedGame(cursor);
+                byId.put(game.sourceDocumentId, game);
+            }
+        }
+
+        List<ListedGame> games = new ArrayList<>(sourceDocumentIds.size());
+        for (String id : sourceDocumentIds) {
+            ListedGame game = byId.get(id);
+            if (game != null) {
+                games.add(game);
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Lê os jogos da lista de uma raiz que ainda não têm boxFront.png
+     * @param rootUri URI da pasta escolhida pelo usuário
+     * @return Jogos na ordem da lista
+     */
+    public List<ListedGame> getListedGamesMissingCover(String rootUri) {
+        List<ListedGame> games = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(LISTED_GAME_COLUMNS + LISTED_GAMES_FROM
+                + " AND g.box_front_document_id IS NULL" + LISTED_GAMES_ORDER, new String[]{rootUri})) {
+            while (cursor.moveToNext()) {
+                games.add(readListedGame(cursor));
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Lê só o necessário para o índice de busca: ID, nome e boxFront
+     * @param rootUri URI da pasta escolhida pelo usuário
+     * @return Registros parciais na ordem da lista
+     */
+    public List<GameRecord> getListedNames(String rootUri) {
+        List<GameRecord> games = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().rawQuery(
+                "SELECT g.source_document_id, g.name, g.box_front_document_id"
+                        + LISTED_GAMES_FROM + LISTED_GAMES_ORDER, new String[]{rootUri})) {
+            while (cursor.moveToNext()) {
+                GameRecord record = new GameRecord();
+                record.sourceDocumentId = cursor.getString(0);
+                record.name = cursor.getString(1);
+                record.boxFrontDocumentId = cursor.getString(2);
+                games.add(record);
+            }
+        }
+        return games;
+    }
+
+    private ListedGame readListedGame(Cursor cursor) {
+        ListedGame game = new ListedGame();
+        game.treeUri = cursor.getString(0);
+        game.consoleName = cursor.getString(1);
+        game.sourceDocumentId = cursor.getString(2);
+        game.name = cursor.getString(3);
+        game.mediaDocumentId = cursor.getString(4);
+        game.boxFrontDocumentId = cursor.getString(5);
+        game.boxFrontLastModified = cursor.getLong(6);
+        game.firstOfCollection = cursor.getInt(7) == 0;
+        game.id = cursor.getLong(8);
+        return game;
+    }
+
+    /**
+     * Remove o índice de uma pasta
+     * @param treeUri URI da árvore da pasta Pegasus
+     */
+    public void deleteCollection(String treeUri) {
+        getWritableDatabase().delete(TABLE_COLLECTIONS, "tree_uri = ?", new String[]{treeUri});
+    }
+}
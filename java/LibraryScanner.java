@@ -0,0 +1,793 @@
+package com.example.pegasusimagemanager;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Varre uma pasta Pegasus em segundo plano e entrega os jogos em lotes na
+ * thread principal conforme os arquivos .desktop são lidos. Se o
+ * metadata.pegasus.txt já lista os jogos (entradas "game:"), a biblioteca
+ * sai dessa única leitura e os arquivos .desktop não são abertos.
+ * A pasta escolhida pode ser a própria coleção ou uma raiz com várias
+ * coleções em subpastas: as coleções são procuradas e lidas em paralelo num
+ * pool fixo de E/S, e cada ramo deixa de ser percorrido assim que uma
+ * coleção é encontrada nele.
+ * Quando uma coleção já foi indexada, a listagem atual é comparada com o
+ * índice salvo por ID do documento, data de modificação e tamanho: só os
+ * arquivos novos ou alterados são relidos. A lista lê os jogos do índice,
+ * então os callbacks só avisam que ele mudou; a lista relê as páginas
+ * exibidas e o DiffUtil aplica as diferenças.
+ */
+public class LibraryScanner {
+    private static final String TAG = "LibraryScanner";
+    private static final String METADATA_FILE = "metadata.pegasus.txt";
+    private static final String BOX_FRONT_FILE = "boxFront.png";
+    private static final int BATCH_SIZE = 25;
+    private static final String METADATA_ENTRY_PREFIX = "metadata:";
+    private static final String METADATA_ENTRY_MIME_TYPE = "text/plain";
+
+    // Profundidade máxima procurada abaixo da raiz (ex.: raiz/roms/snes)
+    private static final int MAX_COLLECTION_DEPTH = 4;
+    // Listagens e coleções lidas ao mesmo tempo. As threads passam quase todo
+    // o tempo esperando o provedor SAF, então o número não segue os núcleos.
+    private static final int COLLECTION_THREADS = 4;
+
+    private final Context context;
+    private final Handler mainHandler;
+    private final ExecutorService executor;
+    private final ExecutorService collectionPool;
+    private final LibraryDatabase database;
+    private ScanTask currentTask;
+    // Última conferência pedida pelas notificações de mudança; enquanto não
+    // começa, novos pedidos entram nela em vez de enfileirar outra
+    private ScanTask refreshTask;
+    private Future<?> refreshFuture;
+
+    /**
+     * Callbacks da varredura, sempre chamados na thread principal
+     */
+    public interface Listener {
+        void onScanStarted();
+        void onCachedLibraryLoaded(List<String> consoleNames);
+        void onConsoleFound(String consoleName, int totalFiles);
+
+        /**
+         * Um lote de jogos de uma coleção ainda sem índice foi gravado
+         */
+        void onGamesLoaded();
+
+        /**
+         * Jogos indexados foram alterados, acrescentados ou removidos
+         */
+        void onLibraryChanged();
+
+        void onScanProgress(int processedFiles, int totalFiles, int gamesFound);
+        void onScanFinished(int gamesFound);
+        void onScanCancelled();
+        void onScanError(String error);
+    }
+
+    public LibraryScanner(Context context) {
+        this.context = context.getApplicationContext();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.executor = Executors.newSingleThreadExecutor();
+        this.collectionPool = Executors.newFixedThreadPool(COLLECTION_THREADS);
+        this.database = LibraryDatabase.getInstance(context);
+    }
+
+    /**
+     * Carrega uma pasta: mostra o índice salvo (se houver) e depois confere a
+     * pasta, cancelando a varredura anterior se ainda estiver em andamento
+     * @param folderUri URI da árvore de uma coleção Pegasus ou de uma raiz com várias coleções
+     * @param listener Receptor dos resultados
+     */
+    public void scan(Uri folderUri, Listener listener) {
+        start(new ScanTask(folderUri, listener, true, null));
+    }
+
+    /**
+     * Confere de novo a pasta já exibida e entrega só as diferenças
+     * @param folderUri URI da árvore de uma coleção Pegasus ou de uma raiz com várias coleções
+     * @param listener Receptor dos resultados
+     */
+    public void rescan(Uri folderUri, Listener listener) {
+        start(new ScanTask(folderUri, listener, false, null));
+    }
+
+    /**
+     * Confere em segundo plano só as coleções indicadas, sem interromper a
+     * varredura em andamento: a conferência entra na fila depois dela. Usado
+     * pelas notificações de mudança da pasta. Pedidos feitos antes de a
+     * conferência anterior começar são juntados a ela; se ela já começou, é
+     * cancelada e as suas coleções passam para a nova.
+     * @param rootUri URI da pasta escolhida pelo usuário
+     * @param collectionUris Coleções a conferir, ou null para procurar de novo todas
+     * @param listener Receptor das diferenças
+     */
+    public void refresh(Uri rootUri, Set<Uri> collectionUris, Listener listener) {
+        Set<String> onlyCollections = null;
+        if (collectionUris != null) {
+            onlyCollections = new HashSet<>();
+            for (Uri collectionUri : collectionUris) {
+                onlyCollections.add(collectionUri.toString());
+            }
+        }
+        if (refreshTask != null) {
+            if (refreshTask.rootUri.equals(rootUri)) {
+                if (refreshTask.merge(onlyCollections, listener)) {
+                    return;
+                }
+                if (!refreshTask.isFinished()) {
+                    onlyCollections = refreshTask.widen(onlyCollections);
+                }
+            }
+            // Só uma conferência fica registrada, para que cancel() alcance todas
+            cancelRefresh();
+        }
+        refreshTask = new ScanTask(rootUri, listener, false, onlyCollections);
+        refreshFuture = executor.submit(refreshTask);
+    }
+
+    private void start(ScanTask task) {
+        // A varredura anterior é substituída sem avisar o cancelamento
+        if (currentTask != null) {
+            currentTask.cancel(false);
+        }
+        // A varredura completa também cobre as conferências pendentes
+        cancelRefresh();
+        currentTask = task;
+        task.listener.onScanStarted();
+        executor.execute(task);
+    }
+
+    /**
+     * Cancela a varredura em andamento. Lotes já enfileirados são descartados.
+     */
+    public void cancel() {
+        if (currentTask != null) {
+            currentTask.cancel(true);
+            currentTask = null;
+        }
+        cancelRefresh();
+    }
+
+    private void cancelRefresh() {
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+            refreshFuture.cancel(false);
+            refreshTask = null;
+            refreshFuture = null;
+        }
+    }
+
+    public boolean isScanning() {
+        return currentTask != null && !currentTask.isFinished();
+    }
+
+    /**
+     * Encerra as threads de varredura. Deve ser chamado no onDestroy.
+     */
+    public void shutdown() {
+        cancel();
+        executor.shutdownNow();
+        collectionPool.shutdownNow();
+    }
+
+    /**
+     * Pastas que nunca contêm coleções e podem ser muito grandes
+     */
+    private static boolean isSkippedDirectory(String name) {
+        return name == null
+                || name.startsWith(".")
+                || name.equalsIgnoreCase(MediaTreeIndex.MEDIA_DIRECTORY)
+                || name.equals("Android")
+                || name.equals("LOST.DIR");
+    }
+
+    private static boolean equalIds(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private class ScanTask implements Runnable {
+        private final Uri rootUri;
+        private volatile Listener listener;
+        private final boolean showCachedLibrary;
+        // Quando não é null, só estas coleções são conferidas, sem procurar
+        // outras. Pode crescer com merge() até a tarefa começar.
+        private Set<String> onlyCollections;
+        private boolean started;
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+        private volatile boolean finished;
+
+        // Totais somados de todas as coleções
+        private final AtomicInteger totalFiles = new AtomicInteger();
+        private final AtomicInteger processedFiles = new AtomicInteger();
+        private final AtomicInteger gamesFound = new AtomicInteger();
+
+        private ExecutorService parserExecutor;
+        private int parallelism;
+
+        ScanTask(Uri rootUri, Listener listener, boolean showCachedLibrary, Set<String> onlyCollections) {
+            this.rootUri = rootUri;
+            this.listener = listener;
+            this.showCachedLibrary = showCachedLibrary;
+            this.onlyCollections = onlyCollections;
+        }
+
+        void cancel(boolean notifyListener) {
+            if (cancelled.compareAndSet(false, true) && notifyListener && !finished) {
+                mainHandler.post(listener::onScanCancelled);
+            }
+        }
+
+        boolean isFinished() {
+            return finished;
+        }
+
+        /**
+         * Junta outro pedido de conferência a esta tarefa, se ela ainda não começou
+         * @param collections Coleções a conferir também, ou null para todas
+         * @param refreshListener Receptor do pedido; substitui o atual quando
+         *                        o pedido amplia a conferência para todas as coleções
+         * @return false se a tarefa já começou e o pedido precisa de outra
+         */
+        synchronized boolean merge(Set<String> collections, Listener refreshListener) {
+            if (started || cancelled.get()) {
+                return false;
+            }
+            if (collections == null) {
+                if (onlyCollections != null) {
+                    onlyCollections = null;
+                    listener = refreshListener;
+                }
+            } else if (onlyCollections != null) {
+                onlyCollections.addAll(collections);
+            }
+            return true;
+        }
+
+        /**
+         * @param collections Coleções de outro pedido, ou null para todas
+         * @return Coleções desta tarefa somadas às do pedido, ou null para todas
+         */
+        synchronized Set<String> widen(Set<String> collections) {
+            if (collections == null || onlyCollections == null) {
+                return null;
+            }
+            Set<String> widened = new HashSet<>(onlyCollections);
+            widened.addAll(collections);
+            return widened;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                started = true;
+            }
+            try {
+                scanRoot();
+            } catch (Exception e) {
+                Log.e(TAG, "Erro na varredura: " + e.getMessage());
+                post(() -> listener.onScanError(e.getMessage()));
+            } finally {
+                finished = true;
+            }
+        }
+
+        private void scanRoot() throws Exception {
+            List<LibraryDatabase.CollectionRecord> cachedCollections = database.getCollections(rootUri.toString());
+            Map<String, LibraryDatabase.CollectionRecord> collectionsByUri = new HashMap<>();
+            Map<String, Map<String, LibraryDatabase.GameRecord>> gamesByUri = new HashMap<>();
+            for (LibraryDatabase.CollectionRecord collection : cachedCollections) {
+                collectionsByUri.put(collection.treeUri, collection);
+                gamesByUri.put(collection.treeUri, database.getGames(collection.id));
+            }
+
+            // A lista já lê o índice salvo em páginas; aqui só os consoles são avisados
+            if (showCachedLibrary) {
+                List<String> cachedNames = new ArrayList<>();
+                for (LibraryDatabase.CollectionRecord collection : cachedCollections) {
+                    if (collection.consoleName != null) {
+                        cachedNames.add(collection.consoleName);
+                    }
+                }
+                if (!cachedNames.isEmpty()) {
+                    post(() -> listener.onCachedLibraryLoaded(cachedNames));
+                }
+            }
+
+            // Procura as coleções em paralelo, a partir da listagem da raiz
+            String rootId = DocumentScanner.getDocumentId(context, rootUri);
+            List<DocumentScanner.Entry> rootEntries = null;
+            List<String> collectionIds;
+            if (onlyCollections != null) {
+                collectionIds = new ArrayList<>();
+                for (LibraryDatabase.CollectionRecord collection : cachedCollections) {
+                    if (onlyCollections.contains(collection.treeUri)) {
+                        collectionIds.add(DocumentScanner.getDocumentId(context, Uri.parse(collection.treeUri)));
+                    }
+                }
+            } else {
+                rootEntries = DocumentScanner.listChildren(context, rootUri);
+                collectionIds = findCollections(rootId, rootEntries);
+            }
+            if (cancelled.get()) {
+                return;
+            }
+
+            List<CollectionScan> scans = new ArrayList<>(collectionIds.size());
+            Set<String> foundUris = new HashSet<>();
+            for (String documentId : collectionIds) {
+                boolean isRoot = documentId.equals(rootId);
+                Uri collectionUri = isRoot
+                        ? rootUri
+                        : DocumentsContract.buildDocumentUriUsingTree(rootUri, documentId);
+                String key = collectionUri.toString();
+                Map<String, LibraryDatabase.GameRecord> cachedGames = gamesByUri.get(key);
+                foundUris.add(key);
+                scans.add(new CollectionScan(collectionUri, isRoot ? rootEntries : null,
+                        collectionsByUri.get(key),
+                        cachedGames != null ? cachedGames : Collections.emptyMap()));
+            }
+
+            // Coleções indexadas que não existem mais abaixo da raiz
+            boolean removedCollections = false;
+            for (LibraryDatabase.CollectionRecord collection : cachedCollections) {
+                if (onlyCollections == null && !foundUris.contains(collection.treeUri)) {
+                    database.deleteCollection(collection.treeUri);
+                    removedCollections = true;
+                }
+            }
+            if (removedCollections) {
+                post(() -> listener.onLibraryChanged());
+            }
+
+            // Todas as coleções são lidas ao mesmo tempo; as leituras de
+            // .desktop dividem um único pool com o paralelismo configurado
+            parallelism = ParallelDesktopParser.getParallelism(context);
+            parserExecutor = Executors.newFixedThreadPool(parallelism);
+            try {
+                List<Future<?>> running = new ArrayList<>(scans.size());
+                for (CollectionScan scan : scans) {
+                    running.add(collectionPool.submit(scan));
+                }
+                for (Future<?> task : running) {
+                    task.get();
+                }
+            } finally {
+                parserExecutor.shutdownNow();
+            }
+
+            if (cancelled.get()) {
+                return;
+            }
+
+            String error = null;
+            int validCollections = 0;
+            for (CollectionScan scan : scans) {
+                if (scan.error != null) {
+                    error = error != null ? error : scan.error;
+                } else if (scan.consoleName != null) {
+                    validCollections++;
+                }
+            }
+
+            if (validCollections == 0) {
+                String message = error != null ? error : context.getString(R.string.no_metadata_found);
+                post(() -> listener.onScanError(message));
+                return;
+            }
+
+            int found = gamesFound.get();
+            post(() -> listener.onScanFinished(found));
+        }
+
+        /**
+         * Procura as pastas com metadata.pegasus.txt nível a nível: as
+         * subpastas de um nível são listadas ao mesmo tempo no pool de
+         * coleções, e a descida para na primeira coleção de cada ramo. Quem
+         * espera as listagens é a thread da varredura, fora do pool, então
+         * nenhuma thread do pool fica bloqueada esperando outra.
+         * @param rootId ID do documento da raiz
+         * @param rootEntries Listagem já feita da raiz
+         * @return IDs das pastas de coleção
+         */
+        private List<String> findCollections(String rootId, List<DocumentScanner.Entry> rootEntries)
+                throws Exception {
+            List<String> found = new ArrayList<>();
+            List<String> level = Collections.singletonList(rootId);
+            List<List<DocumentScanner.Entry>> listings = Collections.singletonList(rootEntries);
+            for (int depth = 0; !level.isEmpty() && !cancelled.get(); depth++) {
+                List<String> nextLevel = new ArrayList<>();
+                for (int i = 0; i < level.size(); i++) {
+                    List<DocumentScanner.Entry> children = listings.get(i);
+                    if (DocumentScanner.findFile(children, METADATA_FILE) != null) {
+                        found.add(level.get(i));
+                    } else if (depth < MAX_COLLECTION_DEPTH) {
+                        for (DocumentScanner.Entry child : children) {
+                            if (child.isDirectory() && !isSkippedDirectory(child.getName())) {
+                                nextLevel.add(child.getDocumentId());
+                            }
+                        }
+                    }
+                }
+
+                List<Future<List<DocumentScanner.Entry>>> pending = new ArrayList<>(nextLevel.size());
+                for (String documentId : nextLevel) {
+                    pending.add(collectionPool.submit(
+                            () -> DocumentScanner.listChildren(context, rootUri, documentId)));
+                }
+                listings = new ArrayList<>(pending.size());
+                for (Future<List<DocumentScanner.Entry>> listing : pending) {
+                    listings.add(listing.get());
+                }
+                level = nextLevel;
+            }
+            return found;
+        }
+
+        /**
+         * Leitura de uma coleção, comparada com o seu índice salvo
+         */
+        private class CollectionScan implements Runnable {
+            private final Uri folderUri;
+            private final List<DocumentScanner.Entry> preloadedEntries;
+            private final LibraryDatabase.CollectionRecord collection;
+            private final Map<String, LibraryDatabase.GameRecord> cachedGames;
+            private boolean snapshotChanged;
+            private volatile String consoleName;
+            private volatile String error;
+
+            CollectionScan(Uri folderUri, List<DocumentScanner.Entry> preloadedEntries,
+                           LibraryDatabase.CollectionRecord collection,
+                           Map<String, LibraryDatabase.GameRecord> cachedGames) {
+                this.folderUri = folderUri;
+                this.preloadedEntries = preloadedEntries;
+                this.collection = collection;
+                this.cachedGames = cachedGames;
+            }
+
+            @Override
+            public void run() {
+                try {
+                    scanFolder();
+                } catch (Exception e) {
+                    // Uma coleção com problema não interrompe as demais
+                    Log.e(TAG, "Erro na coleção " + folderUri + ": " + e.getMessage());
+                    error = e.getMessage();
+                }
+            }
+
+            /**
+             * @throws IOException Se o metadata.pegasus.txt não pôde ser lido; o
+             *                     índice da coleção fica como está até a próxima leitura
+             */
+            private void scanFolder() throws IOException {
+                String treeUri = folderUri.toString();
+                boolean hasSnapshot = collection != null && collection.consoleName != null;
+
+                List<DocumentScanner.Entry> rootEntries = preloadedEntries != null
+                        ? preloadedEntries
+                        : DocumentScanner.listChildren(context, folderUri);
+
+                // Relê o metadata.pegasus.txt inteiro só se ele mudou
+                DocumentScanner.Entry metadataFile = DocumentScanner.findFile(rootEntries, METADATA_FILE);
+                boolean metadataChanged = collection == null || !collection.matchesMetadata(metadataFile);
+                PegasusMetadataParser.Result metadata = null;
+                String console;
+                boolean gamesInMetadata;
+                if (!metadataChanged) {
+                    console = collection.consoleName;
+                    gamesInMetadata = collection.gamesInMetadata;
+                } else {
+                    // Uma falha de leitura sobe para run(): só um arquivo lido
+                    // sem "collection:" descarta a coleção
+                    metadata = metadataFile != null
+                            ? PegasusMetadataParser.parse(context, metadataFile.getUri(folderUri))
+                            : null;
+                    console = metadata != null ? metadata.getConsoleName() : null;
+                    gamesInMetadata = metadata != null && !metadata.getGames().isEmpty();
+                }
+
+                if (console == null) {
+                    if (collection != null) {
+                        database.deleteCollection(treeUri);
+                    }
+                    return;
+                }
+                consoleName = console;
+
+                // Com entradas "game:" no metadata, a biblioteca inteira vem dessa
+                // única leitura; sem elas, cada arquivo .desktop é um jogo
+                Map<String, String> metadataNames = new HashMap<>();
+                List<DocumentScanner.Entry> sourceFiles;
+                if (!gamesInMetadata) {
+                    sourceFiles = new ArrayList<>();
+                    for (DocumentScanner.Entry entry : rootEntries) {
+                        if (entry.isFile() && entry.getName() != null &&
+                            entry.getName().toLowerCase().endsWith(".desktop")) {
+                            sourceFiles.add(entry);
+                        }
+                    }
+                } else if (metadata != null) {
+                    sourceFiles = toMetadataEntries(metadata, metadataNames);
+                } else {
+                    sourceFiles = new ArrayList<>(cachedGames.size());
+                    for (LibraryDatabase.GameRecord record : cachedGames.values()) {
+                        sourceFiles.add(new DocumentScanner.Entry(record.sourceDocumentId, record.name,
+                                METADATA_ENTRY_MIME_TYPE, record.sourceSize, record.sourceLastModified));
+                    }
+                }
+
+                int collectionFiles = sourceFiles.size();
+                int scanTotal = totalFiles.addAndGet(collectionFiles);
+                post(() -> listener.onConsoleFound(console, scanTotal));
+
+                // Segunda listagem do snapshot: a pasta media, uma única vez. As
+                // pastas só são criadas aqui se o usuário pediu a criação na varredura.
+                boolean createMediaFolders = MediaTreeIndex.isCreateOnScanEnabled(context);
+                MediaTreeIndex mediaIndex = new MediaTreeIndex(context, folderUri);
+                mediaIndex.load(rootEntries, createMediaFolders);
+
+                int nextPosition = 0;
+                for (LibraryDatabase.GameRecord record : cachedGames.values()) {
+                    nextPosition = Math.max(nextPosition, record.position + 1);
+                }
+
+                // Só os arquivos novos ou alterados vão para a leitura paralela
+                List<DocumentScanner.Entry> filesToParse = new ArrayList<>();
+                for (DocumentScanner.Entry sourceFile : sourceFiles) {
+                    LibraryDatabase.GameRecord previous = cachedGames.get(sourceFile.getDocumentId());
+                    if (previous == null || !previous.matches(sourceFile)) {
+                        filesToParse.add(sourceFile);
+                    }
+                }
+                ParallelDesktopParser parser = null;
+                Iterator<ParallelDesktopParser.Result> parsedFiles;
+                if (gamesInMetadata) {
+                    List<ParallelDesktopParser.Result> results = new ArrayList<>(filesToParse.size());
+                    for (DocumentScanner.Entry entry : filesToParse) {
+                        results.add(new ParallelDesktopParser.Result(entry, metadataNames.get(entry.getDocumentId()), 0));
+                    }
+                    parsedFiles = results.iterator();
+                } else {
+                    parser = new ParallelDesktopParser(context, folderUri, parserExecutor, parallelism);
+                    parsedFiles = parser.parse(filesToParse);
+                }
+
+                // Coleção sem índice: os jogos vão para o banco a cada lote, para que
+                // a lista (lida do banco) os mostre enquanto a leitura continua
+                LibraryDatabase.CollectionRecord partial = null;
+                if (!hasSnapshot) {
+                    partial = new LibraryDatabase.CollectionRecord();
+                    partial.treeUri = treeUri;
+                    partial.rootUri = rootUri.toString();
+                    partial.consoleName = console;
+                    partial.gamesInMetadata = gamesInMetadata;
+                }
+
+                try {
+                    // Algum jogo listado mudou, entrou ou saiu
+                    boolean listChanged = false;
+                    Set<String> seenIds = new HashSet<>();
+                    List<LibraryDatabase.GameRecord> records = new ArrayList<>(collectionFiles);
+                    int batchGames = 0;
+                    snapshotChanged = metadataChanged;
+                    int processed = 0;
+                    int reported = 0;
+
+                    for (DocumentScanner.Entry sourceFile : sourceFiles) {
+                        if (cancelled.get()) {
+                            return;
+                        }
+
+                        LibraryDatabase.GameRecord previous = cachedGames.get(sourceFile.getDocumentId());
+                        LibraryDatabase.GameRecord record;
+
+                        if (previous != null && previous.matches(sourceFile)) {
+                            // .desktop inalterado: só confere a pasta de mídia
+                            record = previous;
+                            if (record.name != null && refreshMedia(record, mediaIndex, createMediaFolders)) {
+                                listChanged = true;
+                            }
+                        } else {
+                            // Arquivo novo ou alterado: relê o .desktop (ou usa o nome do metadata)
+                            snapshotChanged = true;
+                            record = toRecord(parsedFiles.next(), mediaIndex, createMediaFolders);
+                            record.position = previous != null ? previous.position : nextPosition++;
+
+                            boolean wasListed = previous != null && previous.name != null;
+                            if (wasListed || record.name != null) {
+                                listChanged = true;
+                            }
+                        }
+
+                        seenIds.add(record.sourceDocumentId);
+                        records.add(record);
+                        processed++;
+
+                        if (record.name != null) {
+                            gamesFound.incrementAndGet();
+                            if (!hasSnapshot) {
+                                batchGames++;
+                            }
+                        }
+
+                        if (batchGames >= BATCH_SIZE || processed == collectionFiles) {
+                            if (partial != null) {
+                                database.appendGames(partial, records.subList(reported, processed));
+                            }
+                            emitBatch(batchGames > 0, processedFiles.addAndGet(processed - reported));
+                            reported = processed;
+                            batchGames = 0;
+                        }
+                    }
+
+                    // Arquivos .desktop (ou entradas "game:") que sumiram
+                    for (LibraryDatabase.GameRecord previous : cachedGames.values()) {
+                        if (!seenIds.contains(previous.sourceDocumentId)) {
+                            snapshotChanged = true;
+                            if (previous.name != null) {
+                                listChanged = true;
+                            }
+                        }
+                    }
+
+                    if (snapshotChanged) {
+                        Collections.sort(records, (a, b) -> Integer.compare(a.position, b.position));
+
+                        LibraryDatabase.CollectionRecord updated = new LibraryDatabase.CollectionRecord();
+                        updated.treeUri = treeUri;
+                        updated.rootUri = rootUri.toString();
+                        updated.consoleName = console;
+                        updated.metadataDocumentId = metadataFile != null ? metadataFile.getDocumentId() : null;
+                        updated.metadataLastModified = metadataFile != null ? metadataFile.getLastModified() : 0;
+                        updated.metadataSize = metadataFile != null ? metadataFile.getSize() : 0;
+                        updated.gamesInMetadata = gamesInMetadata;
+                        database.saveLibrary(updated, records);
+                    }
+
+                    if (hasSnapshot && listChanged) {
+                        post(() -> listener.onLibraryChanged());
+                    }
+                } finally {
+                    if (parser != null) {
+                        parser.shutdown();
+                        parser.logStats();
+                    }
+                }
+            }
+
+            /**
+             * Converte as entradas "game:" do metadata em entradas comparáveis com o
+             * índice. O ID combina a pasta da coleção com o título (com sufixo para
+             * títulos repetidos), para que editar o arquivo não troque a identidade
+             * dos jogos, e o tamanho é uma impressão digital do conteúdo da entrada:
+             * só as entradas que mudaram são tratadas como alteradas.
+             * @param names Recebe o nome de cada jogo, por ID
+             */
+            private List<DocumentScanner.Entry> toMetadataEntries(PegasusMetadataParser.Result metadata,
+                                                                  Map<String, String> names) {
+                String prefix = METADATA_ENTRY_PREFIX + DocumentScanner.getDocumentId(context, folderUri) + "/";
+                List<DocumentScanner.Entry> entries = new ArrayList<>(metadata.getGames().size());
+                Map<String, Integer> occurrences = new HashMap<>();
+                for (PegasusMetadataParser.GameEntry game : metadata.getGames()) {
+                    String title = game.getTitle();
+                    Integer seen = occurrences.get(title);
+                    occurrences.put(title, seen == null ? 1 : seen + 1);
+
+                    String id = prefix + title + (seen == null ? "" : "#" + (seen + 1));
+                    long fingerprint = ((long) title.hashCode() << 32)
+                            ^ (game.getFiles().hashCode() * 31L + game.getAssets().hashCode());
+                    entries.add(new DocumentScanner.Entry(id, title, METADATA_ENTRY_MIME_TYPE, fingerprint, 0));
+                    names.put(id, title);
+                }
+                return entries;
+            }
+
+            /**
+             * Monta o registro de um arquivo .desktop lido e resolve a pasta de mídia do jogo
+             */
+            private LibraryDatabase.GameRecord toRecord(ParallelDesktopParser.Result parsed, MediaTreeIndex mediaIndex,
+                                                        boolean createMediaFolder) {
+                DocumentScanner.Entry desktopFile = parsed.getFile();
+                LibraryDatabase.GameRecord record = new LibraryDatabase.GameRecord();
+                record.sourceDocumentId = desktopFile.getDocumentId();
+                record.sourceLastModified = desktopFile.getLastModified();
+                record.sourceSize = desktopFile.getSize();
+
+                String gameName = parsed.getGameName();
+                if (gameName != null && !gameName.isEmpty()) {
+                    record.name = gameName;
+                    refreshMedia(record, mediaIndex, createMediaFolder);
+                }
+                return record;
+            }
+
+            /**
+             * Confere a pasta de mídia do jogo contra o snapshot. A pasta do jogo
+             * só é listada quando seu ID ou data de modificação mudou.
+             * @param createMediaFolder true para criar a pasta do jogo se ela não existe
+             * @return true se a pasta ou o boxFront.png do jogo mudou
+             */
+            private boolean refreshMedia(LibraryDatabase.GameRecord record, MediaTreeIndex mediaIndex,
+                                         boolean createMediaFolder) {
+                DocumentScanner.Entry gameDir = mediaIndex.findGameDirectoryEntry(record.name);
+                if (gameDir == null && createMediaFolder) {
+                    mediaIndex.getOrCreateGameDirectory(record.name);
+                    gameDir = mediaIndex.findGameDirectoryEntry(record.name);
+                }
+
+                String previousMediaId = record.mediaDocumentId;
+                String previousBoxFrontId = record.boxFrontDocumentId;
+                long previousBoxFrontLastModified = record.boxFrontLastModified;
+
+                if (gameDir == null) {
+                    record.mediaDocumentId = null;
+                    record.mediaLastModified = 0;
+                    record.boxFrontDocumentId = null;
+                    record.boxFrontLastModified = 0;
+                } else if (!gameDir.getDocumentId().equals(record.mediaDocumentId)
+                        || gameDir.getLastModified() != record.mediaLastModified) {
+                    DocumentScanner.Entry boxFront = DocumentScanner.findFile(
+                            DocumentScanner.listChildren(context, folderUri, gameDir.getDocumentId()), BOX_FRONT_FILE);
+                    record.mediaDocumentId = gameDir.getDocumentId();
+                    record.mediaLastModified = gameDir.getLastModified();
+                    record.boxFrontDocumentId = boxFront != null ? boxFront.getDocumentId() : null;
+                    record.boxFrontLastModified = boxFront != null ? boxFront.getLastModified() : 0;
+                    snapshotChanged = true;
+                }
+
+                return !equalIds(previousMediaId, record.mediaDocumentId)
+                        || !equalIds(previousBoxFrontId, record.boxFrontDocumentId)
+                        || previousBoxFrontLastModified != record.boxFrontLastModified;
+            }
+        }
+
+        /**
+         * @param gamesAdded true se o lote gravou jogos novos no índice
+         */
+        private void emitBatch(boolean gamesAdded, int processed) {
+            int total = totalFiles.get();
+            int found = gamesFound.get();
+            post(() -> {
+                if (gamesAdded) {
+                    listener.onGamesLoaded();
+                }
+                listener.onScanProgress(processed, total, found);
+            });
+        }
+
+        /**
+         * Entrega um resultado na thread principal, a menos que a varredura
+         * tenha sido cancelada nesse meio tempo
+         */
+        private void post(Runnable action) {
+            mainHandler.post(() -> {
+                if (!cancelled.get()) {
+                    action.run();
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.example.pegasusimagemanager;
+
+import android.content.Context;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.DocumentsContract;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Acompanha mudanças feitas por outros apps na pasta Pegasus. Observa a raiz,
+ * a pasta de cada coleção e a pasta "media" de cada coleção; as notificações
+ * chegam agrupadas depois de um intervalo sem novos eventos e indicam só as
+ * coleções afetadas, para que apenas elas sejam conferidas.
+ * O provedor de armazenamento só envia notificações de um diretório enquanto
+ * existe um cursor aberto para os seus filhos, por isso cada diretório
+ * observado mantém o seu cursor aberto até stop().
+ * As pastas que o próprio app cria (noteOwnWrite) também geram notificações;
+ * por um curto intervalo elas não disparam uma conferência, já que o índice
+ * foi atualizado por quem escreveu. Como uma mudança de outro app nesse
+ * intervalo não se distingue delas, a coleção fica guardada e entra na
+ * próxima conferência.
+ */
+public class LibraryWatcher {
+    private static final String TAG = "LibraryWatcher";
+    private static final long DEBOUNCE_MS = 1500;
+    // Tempo depois de uma escrita do app em que as notificações da coleção são ignoradas
+    private static final long OWN_WRITE_WINDOW_MS = DEBOUNCE_MS * 2;
+
+    // Coleção → instante (elapsedRealtime) da última escrita do próprio app
+    private static final Map<String, Long> ownWrites = new ConcurrentHashMap<>();
+
+    private final Context context;
+    private final Handler mainHandler;
+    private final ExecutorService executor;
+    private final Callback callback;
+
+    private final List<Cursor> openCursors = new ArrayList<>();
+    private final List<ContentObserver> observers = new ArrayList<>();
+    private final Set<Uri> pendingCollections = new HashSet<>();
+    // Coleções notificadas durante uma escrita do app; esperam o próximo flush
+    private final Set<Uri> deferredCollections = new HashSet<>();
+    private boolean rootChanged;
+    private int generation;
+    private boolean shutDown;
+
+    /**
+     * Recebe as mudanças já agrupadas, na thread principal
+     */
+    public interface Callback {
+        /**
+         * Arquivos mudaram dentro de coleções conhecidas
+         * @param collectionUris Coleções afetadas
+         */
+        void onCollectionsChanged(Set<Uri> collectionUris);
+
+        /**
+         * A raiz mudou: coleções podem ter sido criadas ou removidas
+         */
+        void onRootChanged();
+    }
+
+    public LibraryWatcher(Context context, Callback callback) {
+        this.context = context.getApplicationContext();
+        this.mainHandler = new Handler(Looper.getMainLooper());
+        this.executor = Executors.newSingleThreadExecutor();
+        this.callback = callback;
+    }
+
+    /**
+     * Registra que o app vai escrever na coleção, para que a notificação
+     * resultante não dispare uma nova conferência
+     * @param collectionUri URI da coleção onde a escrita acontece
+     */
+    public static void noteOwnWrite(Uri collectionUri) {
+        ownWrites.put(collectionUri.toString(), SystemClock.elapsedRealtime());
+    }
+
+    private static boolean isOwnWrite(Uri collectionUri) {
+        Long writtenAt = ownWrites.get(collectionUri.toString());
+        if (writtenAt == null) {
+            return false;
+        }
+        if (SystemClock.elapsedRealtime() - writtenAt > OWN_WRITE_WINDOW_MS) {
+            ownWrites.remove(collectionUri.toString(), writtenAt);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Passa a observar a raiz e as coleções indexadas abaixo dela,
+     * substituindo o que era observado antes
+     * @param rootUri URI da pasta escolhida pelo usuário
+     */
+    public void watch(Uri rootUri) {
+        if (shutDown) {
+            return;
+        }
+        stop();
+        int watchGeneration = generation;
+        executor.execute(() -> {
+            List<LibraryDatabase.CollectionRecord> collections =
+                    LibraryDatabase.getInstance(context).getCollections(rootUri.toString());
+
+            // Abre os cursores em segundo plano e registra na thread principal
+            List<WatchedDirectory> directories = new ArrayList<>();
+            String rootId = DocumentScanner.getDocumentId(context, rootUri);
+            directories.add(openDirectory(rootUri, rootId, null));
+            for (LibraryDatabase.CollectionRecord collection : collections) {
+                Uri collectionUri = Uri.parse(collection.treeUri);
+                String collectionId = DocumentScanner.getDocumentId(context, collectionUri);
+                if (!collectionId.equals(rootId)) {
+                    directories.add(openDirectory(rootUri, collectionId, collectionUri));
+                } else {
+                    directories.get(0).collectionUri = collectionUri;
+                }
+
+                DocumentScanner.Entry media = DocumentScanner.findDirectory(
+                        DocumentScanner.listChildren(context, collectionUri), MediaTreeIndex.MEDIA_DIRECTORY);
+                if (media != null) {
+                    directories.add(openDirectory(rootUri, media.getDocumentId(), collectionUri));
+                }
+            }
+
+            mainHandler.post(() -> register(directories, watchGeneration));
+        });
+    }
+
+    /**
+     * Para de observar e descarta eventos pendentes
+     */
+    public void stop() {
+        if (shutDown) {
+            return;
+        }
+        generation++;
+        mainHandler.removeCallbacks(flushRunnable);
+        pendingCollections.clear();
+        deferredCollections.clear();
+        rootChanged = false;
+
+        for (ContentObserver observer : observers) {
+            context.getContentResolver().unregisterContentObserver(observer);
+        }
+        observers.clear();
+
+        List<Cursor> cursors = new ArrayList<>(openCursors);
+        openCursors.clear();
+        executor.execute(() -> {
+            for (Cursor cursor : cursors) {
+                cursor.close();
+            }
+        });
+    }
+
+    /**
+     * Encerra a thread de apoio. Deve ser chamado no onDestroy; depois dele,
+     * watch() e stop() não fazem nada.
+     */
+    public void shutdown() {
+        stop();
+        shutDown = true;
+        executor.shutdown();
+    }
+
+    private static class WatchedDirectory {
+        Cursor cursor;
+        Uri notificationUri;
+        // null para a raiz quando ela não é uma coleção
+        Uri collectionUri;
+    }
+
+    private WatchedDirectory openDirectory(Uri treeUri, String documentId, Uri collectionUri) {
+        WatchedDirectory directory = new WatchedDirectory();
+        directory.collectionUri = collectionUri;
+        Uri childrenUri = DocumentsContract.buildChildDocumentsUriUsingTree(treeUri, documentId);
+        try {
+            directory.cursor = context.getContentResolver().query(childrenUri,
+                    new String[]{DocumentsContract.Document.COLUMN_DOCUMENT_ID}, null, null, null);
+        } catch (Exception e) {
+            Log.e(TAG, "Erro ao observar diretório: " + e.getMessage());
+        }
+        Uri notificationUri = directory.cursor != null ? directory.cursor.getNotificationUri() : null;
+        directory.notificationUri = notificationUri != null ? notificationUri : childrenUri;
+        return directory;
+    }
+
+    private void register(List<WatchedDirectory> directories, int watchGeneration) {
+        if (shutDown) {
+            // A thread de apoio já foi encerrada: fecha aqui mesmo
+            for (WatchedDirectory directory : directories) {
+                if (directory.cursor != null) {
+                    directory.cursor.close();
+                }
+            }
+            return;
+        }
+        if (watchGeneration != generation) {
+            // watch() ou stop() foi chamado de novo enquanto os cursores abriam
+            executor.execute(() -> {
+                for (WatchedDirectory directory : directories) {
+                    if (directory.cursor != null) {
+                        directory.cursor.close();
+                    }
+                }
+            });
+            return;
+        }
+
+        for (WatchedDirectory directory : directories) {
+            if (directory.cursor != null) {
+                openCursors.add(directory.cursor);
+            }
+            ContentObserver observer = new ContentObserver(mainHandler) {
+                @Override
+                public void onChange(boolean selfChange) {
+                    onDirectoryChanged(directory.collectionUri);
+                }
+            };
+            context.getContentResolver().registerContentObserver(directory.notificationUri, false, observer);
+            observers.add(observer);
+        }
+    }
+
+    /**
+     * Acumula o evento e reinicia o intervalo de espera
+     */
+    private void onDirectoryChanged(Uri collectionUri) {
+        if (collectionUri != null && isOwnWrite(collectionUri)) {
+            deferredCollections.add(collectionUri);
+            return;
+        }
+        if (collectionUri != null) {
+            pendingCollections.add(collectionUri);
+        } else {
+            rootChanged = true;
+        }
+        mainHandler.removeCallbacks(flushRunnable);
+        mainHandler.postDelayed(flushRunnable, DEBOUNCE_MS);
+    }
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (rootChanged) {
+                // Uma leitura completa também cobre as coleções pendentes
+                callback.onRootChanged();
+            } else if (!pendingCollections.isEmpty()) {
+                pendingCollections.addAll(deferredCollections);
+                callback.onCollectionsChanged(new HashSet<>(pendingCollections));
+            }
+            rootChanged = false;
+            pendingCollections.clear();
+            deferredCollections.clear();
+        }
+    };
+}
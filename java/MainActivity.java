@@ -11,6 +11,9 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.DocumentsContract;
 import android.provider.Settings;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -21,6 +24,7 @@ import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SearchView;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
 import androidx.documentfile.provider.DocumentFile;
@@ -30,13 +34,18 @@ import androidx.recyclerview.widget.RecyclerView;
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.card.MaterialCardView;
+import com.google.android.material.progressindicator.LinearProgressIndicator;
 
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
-public class MainActivity extends AppCompatActivity implements GameAdapter.OnGameClickListener {
+public class MainActivity extends AppCompatActivity implements GameAdapter.OnGameClickListener,
+        LibraryScanner.Listener {
 
     private static final int PERMISSION_REQUEST_CODE = 1001;
     private static final int IMAGE_SEARCH_REQUEST_CODE = 1002;
@@ -49,11 +58,26 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
     private TextView tvGamesCount;
     private TextView tvCurrentPath;
     private RecyclerView recyclerViewGames;
+    private View layoutScanProgress;
+    private LinearProgressIndicator progressScan;
+    private TextView tvScanStatus;
+    private View layoutCoverBatch;
+    private LinearProgressIndicator progressCoverBatch;
+    private TextView tvCoverBatchStatus;
     
     private GameAdapter gameAdapter;
-    private List<Game> gamesList;
+    private LibraryScanner libraryScanner;
+    private LibraryWatcher libraryWatcher;
+    private CoverBatchJob coverBatchJob;
+    private final Set<String> consoleNames = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+    // Cópia de imagens da galeria para a pasta do jogo
+    private final ExecutorService fileExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private Uri selectedFolderUri;
-    private int currentGamePosition = -1;
+    private String searchQuery = "";
+    private boolean missingCoverOnly;
+    // Jogo cujo botão foi tocado; a versão atual é lida do adapter no retorno
+    private Game currentGame;
     
     private ActivityResultLauncher<Intent> folderPickerLauncher;
     private ActivityResultLauncher<Intent> imagePickerLauncher;
@@ -74,8 +98,59 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
         setupRecyclerView();
         checkPermissions();
         
+        // Com a API configurada, a conexão já fica pronta para a primeira busca
+        SteamGridDbApi steamGridDbApi = new SteamGridDbApi(this);
+        if (steamGridDbApi.hasApiKey()) {
+            steamGridDbApi.warmUp();
+            GameIdStore.getInstance(this).preload();
+        }
+        
+        libraryScanner = new LibraryScanner(this);
+        libraryWatcher = new LibraryWatcher(this, new LibraryWatcher.Callback() {
+            @Override
+            public void onCollectionsChanged(Set<Uri> collectionUris) {
+                if (selectedFolderUri != null) {
+                    libraryScanner.refresh(selectedFolderUri, collectionUris,
+                            new LiveUpdateListener(selectedFolderUri, false));
+                }
+            }
+
+            @Override
+            public void onRootChanged() {
+                if (selectedFolderUri != null) {
+                    libraryScanner.refresh(selectedFolderUri, null,
+                            new LiveUpdateListener(selectedFolderUri, true));
+                }
+            }
+        });
+        
         // Tenta carregar pasta salva automaticamente
         loadSavedFolder();
+        
+        // Lote iniciado antes de uma rotação: retoma o andamento
+        coverBatchJob = CoverBatchJob.getCurrent();
+        if (coverBatchJob != null) {
+            layoutCoverBatch.setVisibility(View.VISIBLE);
+            coverBatchJob.setListener(new CoverBatchListener());
+        }
+    }
+    
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (coverBatchJob != null) {
+            // Numa rotação o lote segue para a próxima Activity; ao sair, para
+            if (isFinishing()) {
+                coverBatchJob.cancel();
+            } else {
+                coverBatchJob.setListener(null);
+            }
+        }
+        libraryWatcher.shutdown();
+        libraryScanner.shutdown();
+        gameAdapter.shutdown();
+        // Uma cópia em andamento termina; o resultado é descartado
+        fileExecutor.shutdown();
     }
 
     private void initializeViews() {
@@ -85,8 +160,16 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
         tvGamesCount = findViewById(R.id.tvGamesCount);
         tvCurrentPath = findViewById(R.id.tvCurrentPath);
         recyclerViewGames = findViewById(R.id.recyclerViewGames);
+        layoutScanProgress = findViewById(R.id.layoutScanProgress);
+        progressScan = findViewById(R.id.progressScan);
+        tvScanStatus = findViewById(R.id.tvScanStatus);
         
         btnSelectFolder.setOnClickListener(v -> openFolderPicker());
+        findViewById(R.id.btnCancelScan).setOnClickListener(v -> libraryScanner.cancel());
+        layoutCoverBatch = findViewById(R.id.layoutCoverBatch);
+        progressCoverBatch = findViewById(R.id.progressCoverBatch);
+        tvCoverBatchStatus = findViewById(R.id.tvCoverBatchStatus);
+        findViewById(R.id.btnCancelCoverBatch).setOnClickListener(v -> cancelCoverBatch());
     }
     
     private void setupToolbar() {
@@ -97,6 +180,25 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
     @Override
     public boolean onCreateOptionsMenu(Menu menu) {
         getMenuInflater().inflate(R.menu.main_menu, menu);
+        
+        // A busca filtra pelo índice do adapter a cada letra digitada
+        SearchView searchView = (SearchView) menu.findItem(R.id.action_search).getActionView();
+        searchView.setQueryHint(getString(R.string.search_games));
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener() {
+            @Override
+            public boolean onQueryTextSubmit(String query) {
+                searchView.clearFocus();
+                return true;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText) {
+                searchQuery = newText;
+                gameAdapter.setFilter(searchQuery, missingCoverOnly);
+                return true;
+            }
+        });
+        menu.findItem(R.id.action_missing_cover).setChecked(missingCoverOnly);
         return true;
     }
     
@@ -109,6 +211,19 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
         } else if (itemId == R.id.action_change_folder) {
             openFolderPicker();
             return true;
+        } else if (itemId == R.id.action_missing_cover) {
+            missingCoverOnly = !item.isChecked();
+            item.setChecked(missingCoverOnly);
+            gameAdapter.setFilter(searchQuery, missingCoverOnly);
+            return true;
+        } else if (itemId == R.id.action_fetch_missing_covers) {
+            startCoverBatch();
+            return true;
+        } else if (itemId == R.id.action_refresh) {
+            if (selectedFolderUri != null) {
+                libraryScanner.rescan(selectedFolderUri, this);
+            }
+            return true;
         }
         return super.onOptionsItemSelected(item);
     }
@@ -126,6 +241,12 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
                                     Intent.FLAG_GRANT_READ_URI_PERMISSION |
                                     Intent.FLAG_GRANT_WRITE_URI_PERMISSION);
                             
+                            // Mesma pasta já exibida: confere só as diferenças
+                            if (uri.equals(selectedFolderUri) && gameAdapter.getGameCount() > 0) {
+                                libraryScanner.rescan(uri, this);
+                                return;
+                            }
+                            
                             selectedFolderUri = uri;
                             saveFolderUri(uri);
                             processSelectedFolder();
@@ -140,8 +261,8 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
                 result -> {
                     if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null) {
                         Uri imageUri = result.getData().getData();
-                        if (imageUri != null && currentGamePosition >= 0) {
-                            copyImageToGameDirectory(imageUri, currentGamePosition);
+                        if (imageUri != null && currentGame != null) {
+                            copyImageToGameDirectory(imageUri, currentGame);
                         }
                     }
                 }
@@ -151,23 +272,37 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
         imageSearchLauncher = registerForActivityResult(
                 new ActivityResultContracts.StartActivityForResult(),
                 result -> {
-                    if (result.getResultCode() == Activity.RESULT_OK && currentGamePosition >= 0) {
-                        // Atualiza o jogo se imagem foi baixada
-                        Game game = gamesList.get(currentGamePosition);
-                        game.checkImageExists(this);
-                        gameAdapter.updateGame(currentGamePosition, game);
+                    if (result.getResultCode() == Activity.RESULT_OK && currentGame != null) {
+                        Intent data = result.getData();
+                        String imageDocumentId = data != null
+                                ? data.getStringExtra(ImageSearchActivity.EXTRA_IMAGE_DOCUMENT_ID) : null;
+                        if (imageDocumentId != null) {
+                            // A busca informa a pasta e a capa gravadas, com a data nova
+                            Game current = gameAdapter.findGame(currentGame);
+                            Game game = (current != null ? current : currentGame).copy();
+                            game.setMediaDocuments(
+                                    data.getStringExtra(ImageSearchActivity.EXTRA_MEDIA_DOCUMENT_ID),
+                                    imageDocumentId,
+                                    data.getLongExtra(ImageSearchActivity.EXTRA_IMAGE_LAST_MODIFIED, 0));
+                            gameAdapter.updateGame(game);
+                        } else {
+                            // A busca gravou a imagem (e talvez criou a pasta): o
+                            // adapter confere de novo em segundo plano
+                            gameAdapter.refreshImage(currentGame);
+                        }
                     }
                 }
         );
     }
 
     private void setupRecyclerView() {
-        gamesList = new ArrayList<>();
-        gameAdapter = new GameAdapter(gamesList, this);
+        gameAdapter = new GameAdapter(this);
         gameAdapter.setOnGameClickListener(this);
+        gameAdapter.setOnGameCountListener(count -> updateGamesCount());
         
         recyclerViewGames.setLayoutManager(new LinearLayoutManager(this));
         recyclerViewGames.setAdapter(gameAdapter);
+        recyclerViewGames.addOnScrollListener(new CoverPreloader(gameAdapter));
     }
 
     private void checkPermissions() {
@@ -208,55 +343,98 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
             return;
         }
         
-        // Lê o nome do console do arquivo metadata.pegasus.txt
-        String consoleName = FileHelper.readConsoleNameFromMetadata(this, selectedFolderUri);
+        libraryWatcher.stop();
+        cancelCoverBatch();
+        consoleNames.clear();
+        gameAdapter.clearImageCache();
+        gameAdapter.setShowCollectionHeaders(false);
         
-        if (consoleName == null) {
-            Toast.makeText(this, getString(R.string.no_metadata_found), Toast.LENGTH_LONG).show();
-            return;
-        }
+        // A lista lê o índice salvo em páginas; a leitura roda em segundo
+        // plano e grava os jogos no índice em lotes
+        gameAdapter.setLibrary(selectedFolderUri);
+        libraryScanner.scan(selectedFolderUri, this);
+    }
+
+    @Override
+    public void onScanStarted() {
+        progressScan.setIndeterminate(true);
+        progressScan.setProgressCompat(0, false);
+        tvScanStatus.setText(getString(R.string.scanning_library));
+        layoutScanProgress.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    public void onCachedLibraryLoaded(List<String> cachedConsoleNames) {
+        consoleNames.clear();
+        consoleNames.addAll(cachedConsoleNames);
+        showConsoleInfo();
+    }
+
+    @Override
+    public void onConsoleFound(String consoleName, int totalFiles) {
+        consoleNames.add(consoleName);
+        showConsoleInfo();
         
-        // Lê os nomes dos jogos dos arquivos .desktop
-        List<String> gameNames = FileHelper.readGameNamesFromDesktopFiles(this, selectedFolderUri);
+        // O total cresce a cada coleção encontrada
+        progressScan.setIndeterminate(false);
+        progressScan.setMax(Math.max(totalFiles, 1));
+    }
+
+    @Override
+    public void onGamesLoaded() {
+        // Os jogos já estão no índice; a lista relê as páginas exibidas
+        gameAdapter.reload();
+    }
+
+    @Override
+    public void onLibraryChanged() {
+        gameAdapter.reload();
+    }
+
+    @Override
+    public void onScanProgress(int processedFiles, int totalFiles, int gamesFound) {
+        progressScan.setProgressCompat(processedFiles, true);
+        tvScanStatus.setText(getString(R.string.scan_progress, processedFiles, totalFiles, gamesFound));
+    }
+
+    @Override
+    public void onScanFinished(int gamesFound) {
+        layoutScanProgress.setVisibility(View.GONE);
+        gameAdapter.reload();
+        
+        // A partir daqui, mudanças feitas por outros apps chegam sozinhas
+        libraryWatcher.watch(selectedFolderUri);
         
-        if (gameNames.isEmpty()) {
-            Toast.makeText(this, "Nenhum jogo encontrado nos arquivos .desktop", Toast.LENGTH_LONG).show();
+        if (gamesFound == 0) {
+            Toast.makeText(this, getString(R.string.no_games_found), Toast.LENGTH_LONG).show();
             return;
         }
         
-        // Atualiza a UI
-        tvConsoleName.setText(consoleName);
-        tvGamesCount.setText(gameNames.size() + " jogos");
-        updateCurrentPathDisplay();
-        cardConsoleInfo.setVisibility(View.VISIBLE);
-        btnSelectFolder.setText(getString(R.string.change_folder));
-        
-        // Cria lista de jogos
-        gamesList.clear();
-        for (String gameName : gameNames) {
-            Game game = new Game(gameName);
-            
-            // Cria diretório do jogo automaticamente
-            DocumentFile gameDir = FileHelper.createGameMediaDirectory(this, selectedFolderUri, gameName);
-            if (gameDir != null) {
-                game.setGameDirectory(gameDir);
-            }
-            
-            gamesList.add(game);
+        if (MediaTreeIndex.isCreateOnScanEnabled(this)) {
+            Toast.makeText(this, getString(R.string.directories_created), Toast.LENGTH_SHORT).show();
         }
-        
-        gameAdapter.notifyDataSetChanged();
-        Toast.makeText(this, getString(R.string.directories_created), Toast.LENGTH_SHORT).show();
+    }
+
+    @Override
+    public void onScanCancelled() {
+        layoutScanProgress.setVisibility(View.GONE);
+        Toast.makeText(this, getString(R.string.scan_cancelled), Toast.LENGTH_SHORT).show();
+    }
+
+    @Override
+    public void onScanError(String error) {
+        layoutScanProgress.setVisibility(View.GONE);
+        Toast.makeText(this, error, Toast.LENGTH_LONG).show();
     }
 
     @Override
     public void onAddImageClick(Game game, int position) {
-        if (game.getGameDirectory() == null) {
+        if (game.getCollectionUri() == null) {
             Toast.makeText(this, "Diretório do jogo não encontrado", Toast.LENGTH_LONG).show();
             return;
         }
         
-        currentGamePosition = position;
+        currentGame = game;
         
         // Mostra opções: galeria ou buscar online
         showImageSourceDialog(game);
@@ -264,12 +442,12 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
     
     @Override
     public void onSearchCoverClick(Game game, int position) {
-        if (game.getGameDirectory() == null) {
+        if (game.getCollectionUri() == null) {
             Toast.makeText(this, "Diretório do jogo não encontrado", Toast.LENGTH_LONG).show();
             return;
         }
         
-        currentGamePosition = position;
+        currentGame = game;
         searchCoverOnline(game);
     }
     
@@ -300,65 +478,77 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
         
         Intent intent = new Intent(this, ImageSearchActivity.class);
         intent.putExtra(ImageSearchActivity.EXTRA_GAME_NAME, game.getName());
-        intent.putExtra(ImageSearchActivity.EXTRA_PEGASUS_FOLDER_URI, 
-            game.getGameDirectory().getUri().toString());
+        intent.putExtra(ImageSearchActivity.EXTRA_PEGASUS_FOLDER_URI, game.getCollectionUri());
         imageSearchLauncher.launch(intent);
     }
 
-    private void copyImageToGameDirectory(Uri imageUri, int gamePosition) {
-        if (gamePosition < 0 || gamePosition >= gamesList.size()) {
-            return;
+    private void copyImageToGameDirectory(Uri imageUri, Game selectedGame) {
+        // A lista pode ter mudado enquanto a galeria estava aberta
+        // Fora das páginas carregadas, usa o jogo como estava no toque
+        Game current = gameAdapter.findGame(selectedGame);
+        if (current == null) {
+            current = selectedGame;
         }
+        Game game = current.copy();
         
-        Game game = gamesList.get(gamePosition);
-        DocumentFile gameDirectory = game.getGameDirectory();
+        // Listagens, criação de pastas e cópia ficam fora da thread principal
+        fileExecutor.execute(() -> {
+            try {
+                DocumentFile imageFile = writeGalleryImage(imageUri, game);
+                game.setImageUri(imageFile.getUri(), FileHelper.writtenLastModified(imageFile));
+                mainHandler.post(() -> {
+                    if (!isDestroyed()) {
+                        // Atualiza o jogo na lista
+                        gameAdapter.updateGame(game);
+                        Toast.makeText(this, getString(R.string.image_updated), Toast.LENGTH_SHORT).show();
+                    }
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                String errorMessage = "Erro ao copiar imagem";
+                if (e.getMessage() != null) {
+                    errorMessage += ": " + e.getMessage();
+                }
+                String message = errorMessage;
+                mainHandler.post(() -> {
+                    if (!isDestroyed()) {
+                        Toast.makeText(this, message, Toast.LENGTH_LONG).show();
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Grava a imagem escolhida como boxFront.png do jogo, criando a pasta de
+     * mídia se for a primeira imagem. Roda na thread de arquivos.
+     * @param game Cópia do jogo; recebe a pasta criada
+     * @return Imagem gravada
+     */
+    private DocumentFile writeGalleryImage(Uri imageUri, Game game) throws IOException {
+        DocumentFile gameDirectory = game.getGameDirectory(this);
+        
+        // Primeira imagem do jogo: cria a pasta de mídia agora
+        if (gameDirectory == null && game.getCollectionUri() != null) {
+            gameDirectory = FileHelper.createGameMediaDirectory(this, game.getCollectionUri(), game.getName());
+            if (gameDirectory != null) {
+                game.setMediaDocuments(DocumentsContract.getDocumentId(gameDirectory.getUri()), null, 0);
+            }
+        }
         
         if (gameDirectory == null) {
-            Toast.makeText(this, "Diretório do jogo não encontrado", Toast.LENGTH_SHORT).show();
-            return;
+            throw new IOException("Diretório do jogo não encontrado");
         }
         
-        try {
-            // Cria o arquivo boxFront.png no diretório do jogo
-            DocumentFile imageFile = FileHelper.createBoxFrontImage(this, gameDirectory);
-            
-            if (imageFile == null) {
-                Toast.makeText(this, "Não foi possível criar o arquivo de imagem", Toast.LENGTH_SHORT).show();
-                return;
-            }
-            
-            // Copia o conteúdo da imagem selecionada
-            try (InputStream inputStream = getContentResolver().openInputStream(imageUri);
-                 OutputStream outputStream = getContentResolver().openOutputStream(imageFile.getUri())) {
-                
-                if (inputStream == null || outputStream == null) {
-                    throw new Exception("Não foi possível abrir streams");
-                }
-                
-                byte[] buffer = new byte[1024];
-                int length;
-                
-                while ((length = inputStream.read(buffer)) > 0) {
-                    outputStream.write(buffer, 0, length);
-                }
-                
-                outputStream.flush();
+        try (InputStream inputStream = getContentResolver().openInputStream(imageUri)) {
+            if (inputStream == null) {
+                throw new IOException("Não foi possível abrir a imagem");
             }
-            
-            // Atualiza o jogo na lista
-            game.setImageUri(imageFile.getUri());
-            game.setHasImage(true);
-            gameAdapter.updateGame(gamePosition, game);
-            
-            Toast.makeText(this, getString(R.string.image_updated), Toast.LENGTH_SHORT).show();
-            
-        } catch (Exception e) {
-            e.printStackTrace();
-            String errorMessage = "Erro ao copiar imagem";
-            if (e.getMessage() != null) {
-                errorMessage += ": " + e.getMessage();
+            DocumentFile imageFile = FileHelper.writeBoxFrontImage(this, gameDirectory, inputStream);
+            if (imageFile == null) {
+                throw new IOException("Não foi possível criar o arquivo de imagem");
             }
-            Toast.makeText(this, errorMessage, Toast.LENGTH_LONG).show();
+            return imageFile;
         }
     }
 
@@ -423,11 +613,150 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
     }
     
     private void showSelectFolderState() {
+        libraryScanner.cancel();
+        libraryWatcher.stop();
+        layoutScanProgress.setVisibility(View.GONE);
         cardConsoleInfo.setVisibility(View.GONE);
         btnSelectFolder.setText(getString(R.string.select_folder));
         tvCurrentPath.setVisibility(View.GONE);
-        gamesList.clear();
-        gameAdapter.notifyDataSetChanged();
+        consoleNames.clear();
+        gameAdapter.clear();
+    }
+    
+    private void showConsoleInfo() {
+        // Com várias coleções, mostra a quantidade e agrupa a lista por coleção
+        boolean multipleCollections = consoleNames.size() > 1;
+        tvConsoleName.setText(multipleCollections
+                ? getString(R.string.collections_count, consoleNames.size())
+                : consoleNames.iterator().next());
+        gameAdapter.setShowCollectionHeaders(multipleCollections);
+        updateGamesCount();
+        updateCurrentPathDisplay();
+        cardConsoleInfo.setVisibility(View.VISIBLE);
+        btnSelectFolder.setText(getString(R.string.change_folder));
+    }
+    
+    /**
+     * Busca na SteamGridDB as capas de todos os jogos da pasta que ainda
+     * não têm boxFront.png
+     */
+    private void startCoverBatch() {
+        if (selectedFolderUri == null) {
+            return;
+        }
+        if (coverBatchJob != null && coverBatchJob.isRunning()) {
+            Toast.makeText(this, getString(R.string.cover_batch_already_running), Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (!new SteamGridDbApi(this).hasApiKey()) {
+            Toast.makeText(this, getString(R.string.steamgriddb_not_configured), Toast.LENGTH_LONG).show();
+            startActivity(new Intent(this, SettingsActivity.class));
+            return;
+        }
+        
+        progressCoverBatch.setIndeterminate(true);
+        tvCoverBatchStatus.setText(getString(R.string.fetching_missing_covers));
+        layoutCoverBatch.setVisibility(View.VISIBLE);
+        
+        coverBatchJob = new CoverBatchJob(this, selectedFolderUri, new CoverBatchListener());
+        coverBatchJob.start();
+    }
+    
+    /**
+     * Para o lote e mostra o que já foi concluído; os jogos em andamento
+     * terminam sem aparecer no relatório
+     */
+    private void cancelCoverBatch() {
+        if (coverBatchJob == null || !coverBatchJob.isRunning()) {
+            return;
+        }
+        coverBatchJob.cancel();
+        layoutCoverBatch.setVisibility(View.GONE);
+        CoverBatchJob.Progress progress = coverBatchJob.getProgress();
+        if (progress.saved > 0) {
+            gameAdapter.reload();
+        }
+        showCoverBatchReport(progress, coverBatchJob.getOutcomes(), true);
+    }
+    
+    /**
+     * Acompanha o lote enquanto esta Activity existe
+     */
+    private class CoverBatchListener implements CoverBatchJob.Listener {
+        private int savedShown;
+        
+        @Override
+        public void onBatchProgress(CoverBatchJob.Progress progress) {
+            if (progress.total == 0) {
+                return;
+            }
+            progressCoverBatch.setIndeterminate(false);
+            progressCoverBatch.setMax(progress.total);
+            progressCoverBatch.setProgressCompat(progress.finished, true);
+            tvCoverBatchStatus.setText(getString(R.string.cover_batch_progress, progress.finished,
+                    progress.total, progress.saved, progress.failed, progress.gamesPerMinute));
+            
+            // A capa já está no índice: a lista relê só quando algo foi salvo
+            if (progress.saved != savedShown) {
+                savedShown = progress.saved;
+                gameAdapter.reload();
+            }
+        }
+        
+        @Override
+        public void onBatchFinished(CoverBatchJob.Progress progress, List<CoverBatchJob.Outcome> outcomes,
+                                    boolean cancelled) {
+            layoutCoverBatch.setVisibility(View.GONE);
+            if (isFinishing() || isDestroyed()) {
+                return;
+            }
+            if (progress.saved != savedShown) {
+                gameAdapter.reload();
+            }
+            if (progress.total == 0 && !cancelled) {
+                Toast.makeText(MainActivity.this, getString(R.string.cover_batch_no_missing),
+                        Toast.LENGTH_SHORT).show();
+                return;
+            }
+            showCoverBatchReport(progress, outcomes, cancelled);
+        }
+    }
+    
+    /**
+     * Mostra o resultado de cada jogo do lote: primeiro as falhas, com o
+     * motivo, depois as capas salvas
+     */
+    private void showCoverBatchReport(CoverBatchJob.Progress progress, List<CoverBatchJob.Outcome> outcomes,
+                                      boolean cancelled) {
+        StringBuilder report = new StringBuilder(getString(R.string.cover_batch_summary,
+                progress.saved, progress.failed));
+        
+        if (progress.failed > 0) {
+            report.append("\n\n").append(getString(R.string.cover_batch_failures));
+            for (CoverBatchJob.Outcome outcome : outcomes) {
+                if (!outcome.saved) {
+                    report.append("\n• ").append(outcome.gameName).append(": ").append(outcome.detail);
+                }
+            }
+        }
+        if (progress.saved > 0) {
+            report.append("\n\n").append(getString(R.string.cover_batch_saved));
+            for (CoverBatchJob.Outcome outcome : outcomes) {
+                if (outcome.saved) {
+                    report.append("\n• ").append(outcome.gameName).append(" → ").append(outcome.detail);
+                }
+            }
+        }
+        
+        new android.app.AlertDialog.Builder(this)
+                .setTitle(cancelled ? R.string.cover_batch_cancelled_title : R.string.cover_batch_finished_title)
+                .setMessage(report)
+                .setPositiveButton(android.R.string.ok, null)
+                .show();
+    }
+    
+    private void updateGamesCount() {
+        tvGamesCount.setText(getString(R.string.games_count, gameAdapter.getGameCount()));
     }
     
     private void updateCurrentPathDisplay() {
@@ -441,4 +770,71 @@ public class MainActivity extends AppCompatActivity implements GameAdapter.OnGam
             tvCurrentPath.setVisibility(View.GONE);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Aplica em silêncio as diferenças encontradas depois de uma notificação
+     * de mudança, sem barra de progresso nem mensagens
+     */
+    private class LiveUpdateListener implements LibraryScanner.Listener {
+        private final Uri rootUri;
+        private final boolean fullRefresh;
+
+        LiveUpdateListener(Uri rootUri, boolean fullRefresh) {
+            this.rootUri = rootUri;
+            this.fullRefresh = fullRefresh;
+        }
+
+        private boolean isCurrent() {
+            return rootUri.equals(selectedFolderUri);
+        }
+
+        @Override
+        public void onScanStarted() {
+        }
+
+        @Override
+        public void onCachedLibraryLoaded(List<String> cachedConsoleNames) {
+        }
+
+        @Override
+        public void onConsoleFound(String consoleName, int totalFiles) {
+            if (isCurrent() && consoleNames.add(consoleName)) {
+                showConsoleInfo();
+            }
+        }
+
+        @Override
+        public void onGamesLoaded() {
+            if (isCurrent()) {
+                gameAdapter.reload();
+            }
+        }
+
+        @Override
+        public void onLibraryChanged() {
+            if (isCurrent()) {
+                gameAdapter.reload();
+            }
+        }
+
+        @Override
+        public void onScanProgress(int processedFiles, int totalFiles, int gamesFound) {
+        }
+
+        @Override
+        public void onScanFinished(int gamesFound) {
+            // Coleções podem ter surgido ou sumido: observa o novo conjunto
+            if (fullRefresh && isCurrent()) {
+                libraryWatcher.watch(rootUri);
+            }
+        }
+
+        @Override
+        public void onScanCancelled() {
+        }
+
+        @Override
+        public void onScanError(String error) {
+        }
+    }
+}
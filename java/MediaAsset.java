@@ -0,0 +1,56 @@
+package com.example.pegasusimagemanager;
+
+/**
+ * Tipos de mídia do Pegasus que a SteamGridDB fornece, cada um com o
+ * endpoint, os filtros da busca e o nome do arquivo gravado em
+ * media/&lt;jogo&gt;/. boxBack e screenshot não existem na SteamGridDB e
+ * por isso não aparecem aqui.
+ */
+public enum MediaAsset {
+    // Capa vertical, a mesma da grade de escolha manual
+    BOX_FRONT("boxFront.png", "grids", "dimensions=600x900&types=static", R.string.media_asset_box_front),
+    // Capa horizontal no formato da biblioteca da Steam
+    STEAM("steam.png", "grids", "dimensions=460x215,920x430&types=static", R.string.media_asset_steam),
+    LOGO("logo.png", "logos", "types=static&mimes=image/png", R.string.media_asset_logo),
+    // Os "heroes" da SteamGridDB são as imagens de fundo
+    BACKGROUND("background.png", "heroes", "types=static", R.string.media_asset_background),
+    // Ícones quadrados, usados como tile
+    TILE("tile.png", "icons", "types=static&mimes=image/png", R.string.media_asset_tile);
+
+    private final String fileName;
+    private final String endpoint;
+    private final String params;
+    private final int labelRes;
+
+    MediaAsset(String fileName, String endpoint, String params, int labelRes) {
+        this.fileName = fileName;
+        this.endpoint = endpoint;
+        this.params = params;
+        this.labelRes = labelRes;
+    }
+
+    /**
+     * @return Nome do arquivo na pasta de mídia do jogo
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * @return Caminho do endpoint da API (ex.: "grids" em /grids/game/&lt;id&gt;)
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * @return Filtros da busca, sem limite nem página
+     */
+    public String getParams() {
+        return params;
+    }
+
+    public int getLabelRes() {
+        return labelRes;
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.pegasusimagemanager;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.provider.DocumentsContract;
+
+import androidx.documentfile.provider.DocumentFile;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice da pasta "media" de uma coleção Pegasus.
+ * Lista "media" uma única vez e responde todas as buscas e criações de
+ * pastas de jogos a partir de um mapa nome → ID do documento.
+ */
+public class MediaTreeIndex {
+    public static final String MEDIA_DIRECTORY = "media";
+    private static final String PREFS_NAME = "pegasus_prefs";
+    private static final String PREF_CREATE_ON_SCAN = "create_media_folders_on_scan";
+
+    private final Context context;
+    private final Uri treeUri;
+    private final Map<String, DocumentScanner.Entry> gameDirectories = new HashMap<>();
+    private String mediaDocumentId;
+
+    /**
+     * @param context Contexto da aplicação
+     * @param treeUri URI da árvore do diretório Pegasus (onde está metadata.pegasus.txt)
+     */
+    public MediaTreeIndex(Context context, Uri treeUri) {
+        this.context = context.getApplicationContext();
+        this.treeUri = treeUri;
+    }
+
+    /**
+     * Indica se a varredura deve criar a pasta de mídia de cada jogo. Por
+     * padrão as pastas só são criadas quando a primeira imagem é gravada.
+     * @param context Contexto da aplicação
+     * @return true para criar as pastas durante a varredura
+     */
+    public static boolean isCreateOnScanEnabled(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        return prefs.getBoolean(PREF_CREATE_ON_SCAN, false);
+    }
+
+    public static void setCreateOnScanEnabled(Context context, boolean enabled) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.edit().putBoolean(PREF_CREATE_ON_SCAN, enabled).apply();
+    }
+
+    /**
+     * Lista o diretório Pegasus e a pasta "media" e monta o índice
+     * @param createMediaDirectory true para criar "media" caso não exista
+     * @return true se a pasta "media" está disponível
+     */
+    public synchronized boolean load(boolean createMediaDirectory) {
+        return load(DocumentScanner.listChildren(context, treeUri), createMediaDirectory);
+    }
+
+    /**
+     * Monta o índice a partir de uma listagem já feita do diretório Pegasus
+     * @param rootEntries Entradas do diretório Pegasus
+     * @param createMediaDirectory true para criar "media" caso não exista
+     * @return true se a pasta "media" está disponível
+     */
+    public synchronized boolean load(List<DocumentScanner.Entry> rootEntries, boolean createMediaDirectory) {
+        gameDirectories.clear();
+        mediaDocumentId = null;
+
+        String rootId = DocumentScanner.getDocumentId(context, treeUri);
+        DocumentScanner.Entry mediaEntry = DocumentScanner.findDirectory(rootEntries, MEDIA_DIRECTORY);
+
+        if (mediaEntry != null) {
+            mediaDocumentId = mediaEntry.getDocumentId();
+        } else if (createMediaDirectory) {
+            Uri mediaUri = DocumentScanner.createDirectory(context, treeUri, rootId, MEDIA_DIRECTORY);
+            if (mediaUri == null) {
+                return false;
+            }
+            mediaDocumentId = DocumentsContract.getDocumentId(mediaUri);
+            return true; // Pasta recém-criada, não há o que listar
+        } else {
+            return false;
+        }
+
+        for (DocumentScanner.Entry entry : DocumentScanner.listChildren(context, treeUri, mediaDocumentId)) {
+            if (entry.isDirectory() && entry.getName() != null) {
+                gameDirectories.put(entry.getName(), entry);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true se a pasta "media" foi encontrada ou criada
+     */
+    public synchronized boolean isLoaded() {
+        return mediaDocumentId != null;
+    }
+
+    /**
+     * @return Quantidade de pastas de jogos indexadas
+     */
+    public synchronized int size() {
+        return gameDirectories.size();
+    }
+
+    /**
+     * Procura a pasta de um jogo no índice
+     * @param gameName Nome do jogo
+     * @return DocumentFile da pasta ou null se não existe
+     */
+    public synchronized DocumentFile findGameDirectory(String gameName) {
+        DocumentScanner.Entry entry = gameDirectories.get(gameName);
+        return entry != null ? entry.toDocumentFile(context, treeUri) : null;
+    }
+
+    /**
+     * Procura a entrada da pasta de um jogo, com ID e data de modificação
+     * @param gameName Nome do jogo
+     * @return Entrada da pasta ou null se não existe
+     */
+    public synchronized DocumentScanner.Entry findGameDirectoryEntry(String gameName) {
+        return gameDirectories.get(gameName);
+    }
+
+    /**
+     * Obtém a pasta de um jogo, criando-a se necessário. O índice é
+     * atualizado com a pasta criada.
+     * @param gameName Nome do jogo
+     * @return DocumentFile da pasta ou null se falhou
+     */
+    public synchronized DocumentFile getOrCreateGameDirectory(String gameName) {
+        DocumentFile existing = findGameDirectory(gameName);
+        if (existing != null) {
+            return existing;
+        }
+
+        if (mediaDocumentId == null && !load(true)) {
+            return null;
+        }
+
+        Uri gameUri = DocumentScanner.createDirectory(context, treeUri, mediaDocumentId, gameName);
+        if (gameUri == null) {
+            return null;
+        }
+
+        // O provedor pode renomear (ex.: "Jogo (1)"), então guardamos o ID retornado
+        gameDirectories.put(gameName, new DocumentScanner.Entry(DocumentsContract.getDocumentId(gameUri),
+                gameName, DocumentsContract.Document.MIME_TYPE_DIR, 0, 0));
+        return DocumentFile.fromTreeUri(context, gameUri);
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.pegasusimagemanager;
+
+import android.os.Handler;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Lista de jogos carregada em páginas a partir do índice persistente. O
+ * tamanho é conhecido desde o início, mas só as páginas perto da posição
+ * exibida ficam na memória; as demais posições são marcadores (null) até
+ * serem lidas. A lista nunca é materializada inteira: páginas distantes são
+ * descartadas quando o limite é atingido e relidas se a rolagem voltar.
+ * As páginas só mudam na thread principal e nunca enquanto a lista está
+ * congelada (durante o cálculo de um diff em segundo plano).
+ */
+public class PagedGameList extends AbstractList<Game> {
+    public static final int PAGE_SIZE = 50;
+    // Jogos lidos antes e depois da posição exibida
+    private static final int PREFETCH_DISTANCE = 2 * PAGE_SIZE;
+    private static final int MAX_LOADED_PAGES = 16;
+
+    /**
+     * Avisado na thread principal quando um trecho da lista foi lido
+     */
+    public interface Callback {
+        void onRangeLoaded(PagedGameList list, int start, int count);
+    }
+
+    private final GamePagingSource source;
+    private final int size;
+    private final Game[][] pages;
+    private final boolean[] loading;
+    private final Executor executor;
+    private final Handler mainHandler;
+    private Callback callback;
+    private int lastPosition;
+    private boolean frozen;
+    private boolean detached;
+    private final List<Runnable> deferred = new ArrayList<>();
+
+    private PagedGameList(GamePagingSource source, int size, Executor executor, Handler mainHandler) {
+        this.source = source;
+        this.size = size;
+        int pageCount = (size + PAGE_SIZE - 1) / PAGE_SIZE;
+        this.pages = new Game[pageCount][];
+        this.loading = new boolean[pageCount];
+        this.executor = executor;
+        this.mainHandler = mainHandler;
+    }
+
+    /**
+     * @return Lista vazia, usada quando nenhuma pasta está selecionada
+     */
+    public static PagedGameList empty() {
+        return new PagedGameList(null, 0, null, null);
+    }
+
+    /**
+     * Conta os jogos e lê as páginas ao redor de uma posição. Deve ser chamado
+     * na thread de apoio; assim a lista nova já chega com as linhas visíveis.
+     * @param source Origem das páginas
+     * @param aroundPosition Posição exibida na lista anterior
+     * @param executor Thread de apoio usada para as próximas páginas
+     * @param mainHandler Handler da thread principal
+     * @return Lista pronta para ser enviada ao adapter
+     */
+    public static PagedGameList create(GamePagingSource source, int aroundPosition,
+                                       Executor executor, Handler mainHandler) {
+        PagedGameList list = new PagedGameList(source, source.count(), executor, mainHandler);
+        if (list.size > 0) {
+            int position = Math.max(0, Math.min(aroundPosition, list.size - 1));
+            list.lastPosition = position;
+            int firstPage = Math.max(0, position - PREFETCH_DISTANCE) / PAGE_SIZE;
+            int lastPage = Math.min(list.size - 1, position + PREFETCH_DISTANCE) / PAGE_SIZE;
+            for (int page = firstPage; page <= lastPage; page++) {
+                list.pages[page] = list.readPage(page);
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public Game get(int index) {
+        Game[] page = pages[index / PAGE_SIZE];
+        return page != null ? page[index % PAGE_SIZE] : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    /**
+     * @return true se a lista é um resultado de busca
+     */
+    public boolean isFiltered() {
+        return source != null && source.isFiltered();
+    }
+
+    /**
+     * @return Última posição pedida pela lista, usada para manter a janela
+     *         ao recriar a lista
+     */
+    public int getLastPosition() {
+        return lastPosition;
+    }
+
+    /**
+     * Pede as páginas ao redor de uma posição, chamado a cada bind
+     * @param position Posição exibida
+     */
+    public void loadAround(int position) {
+        if (detached || size == 0) {
+            return;
+        }
+        lastPosition = position;
+        int firstPage = Math.max(0, position - PREFETCH_DISTANCE) / PAGE_SIZE;
+        int lastPage = Math.min(size - 1, position + PREFETCH_DISTANCE) / PAGE_SIZE;
+        for (int page = firstPage; page <= lastPage; page++) {
+            if (pages[page] == null && !loading[page]) {
+                loading[page] = true;
+                int pageIndex = page;
+                executor.execute(() -> {
+                    Game[] games = readPage(pageIndex);
+                    mainHandler.post(() -> onPageLoaded(pageIndex, games));
+                });
+            }
+        }
+    }
+
+    private Game[] readPage(int page) {
+        int start = page * PAGE_SIZE;
+        int count = Math.min(PAGE_SIZE, size - start);
+        List<Game> games = source.load(start, count);
+        // Se o índice mudou desde a contagem, as posições que faltam ficam como
+        // marcadores até a próxima lista
+        Game[] result = new Game[count];
+        for (int i = 0; i < count && i < games.size(); i++) {
+            result[i] = games.get(i);
+        }
+        return result;
+    }
+
+    private void onPageLoaded(int page, Game[] games) {
+        if (frozen) {
+            deferred.add(() -> onPageLoaded(page, games));
+            return;
+        }
+        loading[page] = false;
+        if (detached) {
+            return;
+        }
+        pages[page] = games;
+        evictDistantPages();
+        if (callback != null) {
+            callback.onRangeLoaded(this, page * PAGE_SIZE, games.length);
+        }
+    }
+
+    /**
+     * Descarta as páginas mais distantes da posição exibida quando há mais
+     * páginas na memória que o limite
+     */
+    private void evictDistantPages() {
+        int loaded = 0;
+        for (Game[] page : pages) {
+            if (page != null) {
+                loaded++;
+            }
+        }
+        int currentPage = lastPosition / PAGE_SIZE;
+        while (loaded > MAX_LOADED_PAGES) {
+            int farthest = -1;
+            for (int page = 0; page < pages.length; page++) {
+                if (pages[page] != null
+                        && (farthest < 0 || Math.abs(page - currentPage) > Math.abs(farthest - currentPage))) {
+                    farthest = page;
+                }
+            }
+            pages[farthest] = null;
+            loaded--;
+        }
+    }
+
+    /**
+     * Congela as páginas enquanto o diff lê a lista em segundo plano; as
+     * páginas lidas nesse intervalo são aplicadas ao descongelar
+     * @param frozen true para congelar
+     */
+    public void setFrozen(boolean frozen) {
+        this.frozen = frozen;
+        if (!frozen && !deferred.isEmpty()) {
+            List<Runnable> pending = new ArrayList<>(deferred);
+            deferred.clear();
+            for (Runnable action : pending) {
+                action.run();
+            }
+        }
+    }
+
+    /**
+     * A lista foi substituída: páginas que ainda chegarem são descartadas
+     */
+    public void detach() {
+        detached = true;
+        callback = null;
+        deferred.clear();
+    }
+
+    /**
+     * Procura um jogo entre as páginas carregadas
+     * @param key Chave do jogo (BoxFrontCache.keyOf)
+     * @return Jogo ou null se não está carregado
+     */
+    public Game findLoaded(String key) {
+        for (Game[] page : pages) {
+            if (page == null) {
+                continue;
+            }
+            for (Game game : page) {
+                if (game != null && BoxFrontCache.keyOf(game).equals(key)) {
+                    return game;
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,240 @@
+package com.example.pegasusimagemanager;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lê arquivos .desktop em paralelo com um pool de threads limitado.
+ * Leituras SAF em cartão SD ou USB OTG passam a maior parte do tempo
+ * esperando o armazenamento, então várias leituras simultâneas escondem a
+ * latência. Os resultados são entregues na mesma ordem da listagem.
+ */
+public class ParallelDesktopParser {
+    private static final String TAG = "ParallelDesktopParser";
+    private static final String PREFS_NAME = "pegasus_prefs";
+    private static final String PREF_PARALLELISM = "scan_parallelism";
+
+    public static final int MIN_PARALLELISM = 1;
+    public static final int MAX_PARALLELISM = 8;
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    // Leituras em andamento por thread; limita a memória de resultados prontos
+    private static final int WINDOW_PER_THREAD = 4;
+
+    private final Context context;
+    private final Uri treeUri;
+    private final int parallelism;
+    private final ExecutorService executor;
+    private final boolean ownsExecutor;
+    private OrderedResults results;
+
+    private final AtomicInteger parsedFiles = new AtomicInteger();
+    private final AtomicLong totalParseNanos = new AtomicLong();
+    private final AtomicLong maxParseNanos = new AtomicLong();
+    private long startNanos;
+
+    /**
+     * Resultado da leitura de um arquivo
+     */
+    public static class Result {
+        private final DocumentScanner.Entry file;
+        private final String gameName;
+        private final long parseTimeNanos;
+
+        Result(DocumentScanner.Entry file, String gameName, long parseTimeNanos) {
+            this.file = file;
+            this.gameName = gameName;
+            this.parseTimeNanos = parseTimeNanos;
+        }
+
+        public DocumentScanner.Entry getFile() {
+            return file;
+        }
+
+        /**
+         * @return Nome do jogo ou null se o arquivo não tem Name=
+         */
+        public String getGameName() {
+            return gameName;
+        }
+
+        public long getParseTimeNanos() {
+            return parseTimeNanos;
+        }
+    }
+
+    /**
+     * @param context Contexto da aplicação
+     * @param treeUri URI da árvore onde estão os arquivos
+     * @param parallelism Número de leituras simultâneas
+     */
+    public ParallelDesktopParser(Context context, Uri treeUri, int parallelism) {
+        this.context = context.getApplicationContext();
+        this.treeUri = treeUri;
+        this.parallelism = Math.max(MIN_PARALLELISM, Math.min(MAX_PARALLELISM, parallelism));
+        this.executor = Executors.newFixedThreadPool(this.parallelism);
+        this.ownsExecutor = true;
+    }
+
+    /**
+     * Usa um pool compartilhado, para que várias coleções lidas ao mesmo
+     * tempo não somem threads além do paralelismo configurado
+     * @param context Contexto da aplicação
+     * @param treeUri URI da árvore onde estão os arquivos
+     * @param executor Pool compartilhado; não é encerrado por shutdown()
+     * @param parallelism Número de threads do pool compartilhado
+     */
+    public ParallelDesktopParser(Context context, Uri treeUri, ExecutorService executor, int parallelism) {
+        this.context = context.getApplicationContext();
+        this.treeUri = treeUri;
+        this.parallelism = Math.max(MIN_PARALLELISM, Math.min(MAX_PARALLELISM, parallelism));
+        this.executor = executor;
+        this.ownsExecutor = false;
+    }
+
+    /**
+     * Obtém o número de leituras simultâneas configurado
+     * @param context Contexto da aplicação
+     * @return Paralelismo entre MIN_PARALLELISM e MAX_PARALLELISM
+     */
+    public static int getParallelism(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        int parallelism = prefs.getInt(PREF_PARALLELISM, DEFAULT_PARALLELISM);
+        return Math.max(MIN_PARALLELISM, Math.min(MAX_PARALLELISM, parallelism));
+    }
+
+    public static void setParallelism(Context context, int parallelism) {
+        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        prefs.edit().putInt(PREF_PARALLELISM, parallelism).apply();
+    }
+
+    /**
+     * Inicia a leitura dos arquivos. No máximo parallelism × 4 leituras ficam
+     * pendentes; as demais são enviadas conforme o iterador avança.
+     * @param files Arquivos .desktop a ler
+     * @return Iterador que bloqueia até o próximo resultado, em ordem
+     */
+    public Iterator<Result> parse(List<DocumentScanner.Entry> files) {
+        startNanos = System.nanoTime();
+        results = new OrderedResults(files);
+        return results;
+    }
+
+    /**
+     * Interrompe leituras pendentes e libera as threads
+     */
+    public void shutdown() {
+        if (results != null) {
+            results.cancelPending();
+        }
+        if (ownsExecutor) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Registra no log o resumo dos tempos de leitura, para ajustar o
+     * paralelismo em armazenamento interno e em cartões SD
+     */
+    public void logStats() {
+        int count = parsedFiles.get();
+        if (count == 0) {
+            return;
+        }
+        long wallMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        Log.i(TAG, String.format(Locale.US,
+                "%d arquivos em %d ms com %d threads (média %.2f ms, máx %.2f ms por arquivo)",
+                count, wallMillis, parallelism,
+                totalParseNanos.get() / 1e6 / count, maxParseNanos.get() / 1e6));
+    }
+
+    private Result parseFile(DocumentScanner.Entry file) {
+        long start = System.nanoTime();
+        String gameName;
+        try {
+            gameName = FileHelper.readGameNameFromDesktopFile(context, file.getUri(treeUri));
+        } catch (RuntimeException e) {
+            // Permissão revogada ou documento removido durante a leitura: o
+            // arquivo fica sem nome, como na leitura sequencial, e a coleção segue
+            Log.w(TAG, "Erro ao ler " + file.getName() + ": " + e);
+            gameName = null;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        parsedFiles.incrementAndGet();
+        totalParseNanos.addAndGet(elapsed);
+        long max;
+        while (elapsed > (max = maxParseNanos.get()) && !maxParseNanos.compareAndSet(max, elapsed)) {
+            // Tenta de novo até registrar o maior tempo
+        }
+
+        if (Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, file.getName() + ": " + (elapsed / 1000) + " µs");
+        }
+        return new Result(file, gameName, elapsed);
+    }
+
+    private class OrderedResults implements Iterator<Result> {
+        private final List<DocumentScanner.Entry> files;
+        private final Deque<Future<Result>> pending = new ArrayDeque<>();
+        private int nextToSubmit;
+
+        OrderedResults(List<DocumentScanner.Entry> files) {
+            this.files = files;
+            fillWindow();
+        }
+
+        private void fillWindow() {
+            while (nextToSubmit < files.size() && pending.size() < parallelism * WINDOW_PER_THREAD) {
+                DocumentScanner.Entry file = files.get(nextToSubmit++);
+                pending.addLast(executor.submit(() -> parseFile(file)));
+            }
+        }
+
+        void cancelPending() {
+            nextToSubmit = files.size();
+            for (Future<Result> future : pending) {
+                future.cancel(true);
+            }
+            pending.clear();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public Result next() {
+            Future<Result> head = pending.pollFirst();
+            if (head == null) {
+                throw new NoSuchElementException();
+            }
+            try {
+                return head.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Leitura interrompida", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Erro ao ler arquivo .desktop", e.getCause());
+            } finally {
+                fillWindow();
+            }
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.pegasusimagemanager;
+
+import android.content.Context;
+import android.net.Uri;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Leitor do formato metadata.pegasus.txt em uma única passada.
+ * Entende várias coleções, valores de várias linhas e todas as entradas
+ * "game:", com seus "file:"/"files:" e "assets.*". Como no Pegasus, as
+ * linhas indentadas de um texto continuam o valor anterior separadas por um
+ * espaço, e uma linha só com "." quebra o parágrafo; em "files:" cada linha
+ * é um item.
+ */
+public class PegasusMetadataParser {
+
+    /**
+     * Coleção declarada com "collection:"
+     */
+    public static class Collection {
+        private final String name;
+        private final Map<String, String> properties = new HashMap<>();
+
+        Collection(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return Demais chaves da coleção (shortname, extensions, launch...)
+         */
+        public Map<String, String> getProperties() {
+            return properties;
+        }
+    }
+
+    /**
+     * Jogo declarado com "game:"
+     */
+    public static class GameEntry {
+        private final String title;
+        private final String collection;
+        private List<String> files = Collections.emptyList();
+        private Map<String, String> assets = Collections.emptyMap();
+
+        GameEntry(String title, String collection) {
+            this.title = title;
+            this.collection = collection;
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        /**
+         * @return Nome da última coleção declarada antes do jogo, ou null
+         */
+        public String getCollection() {
+            return collection;
+        }
+
+        public List<String> getFiles() {
+            return files;
+        }
+
+        /**
+         * @return Caminhos dos assets, com a chave normalizada (ex.: "boxfront")
+         */
+        public Map<String, String> getAssets() {
+            return assets;
+        }
+
+        void addFile(String file) {
+            if (files.isEmpty()) {
+                files = new ArrayList<>(1);
+            }
+            files.add(file);
+        }
+
+        void putAsset(String kind, String path) {
+            if (assets.isEmpty()) {
+                assets = new HashMap<>(4);
+            }
+            assets.put(kind, path);
+        }
+    }
+
+    /**
+     * Conteúdo completo de um metadata.pegasus.txt
+     */
+    public static class Result {
+        private final List<Collection> collections = new ArrayList<>();
+        private final List<GameEntry> games = new ArrayList<>();
+
+        public List<Collection> getCollections() {
+            return collections;
+        }
+
+        public List<GameEntry> getGames() {
+            return games;
+        }
+
+        /**
+         * @return Nome da primeira coleção, usado como nome do console
+         */
+        public String getConsoleName() {
+            if (collections.isEmpty()) {
+                return null;
+            }
+            String name = collections.get(0).getName();
+            return name.isEmpty() ? null : name;
+        }
+    }
+
+    private final Result result = new Result();
+    private final StringBuilder value = new StringBuilder();
+    private String key;
+    private Collection currentCollection;
+    private GameEntry currentGame;
+
+    private PegasusMetadataParser() {
+    }
+
+    /**
+     * Lê um metadata.pegasus.txt inteiro com uma única abertura do arquivo
+     * @param context Contexto da aplicação
+     * @param metadataFileUri URI do arquivo metadata.pegasus.txt
+     * @return Coleções e jogos encontrados
+     * @throws IOException Se o arquivo não pôde ser lido; diferente de um
+     *                     arquivo lido sem "collection:"
+     */
+    public static Result parse(Context context, Uri metadataFileUri) throws IOException {
+        InputStream inputStream = context.getContentResolver().openInputStream(metadataFileUri);
+        if (inputStream == null) {
+            throw new FileNotFoundException(metadataFileUri.toString());
+        }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream))) {
+            return parse(reader);
+        }
+    }
+
+    /**
+     * Lê o arquivo inteiro
+     * @param reader Conteúdo do metadata.pegasus.txt
+     * @return Coleções e jogos encontrados
+     */
+    public static Result parse(Reader reader) throws IOException {
+        PegasusMetadataParser parser = new PegasusMetadataParser();
+        BufferedReader buffered = reader instanceof BufferedReader
+                ? (BufferedReader) reader
+                : new BufferedReader(reader);
+
+        String line;
+        while ((line = buffered.readLine()) != null) {
+            parser.parseLine(line);
+        }
+        parser.flush();
+        return parser.result;
+    }
+
+    private void parseLine(String line) {
+        int length = line.length();
+        int start = 0;
+        while (start < length && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+
+        // Linhas vazias e comentários
+        if (start == length || line.charAt(start) == '#') {
+            return;
+        }
+
+        // Linha indentada: continua o valor da chave atual. As linhas ficam
+        // separadas por '\n' até flush(), que as junta conforme a chave
+        if (start > 0) {
+            if (key != null) {
+                if (value.length() > 0) {
+                    value.append('\n');
+                }
+                value.append(line, start, trimmedEnd(line));
+            }
+            return;
+        }
+
+        int colon = line.indexOf(':');
+        if (colon <= 0) {
+            return; // Linha inválida
+        }
+
+        flush();
+        // As chaves são ASCII: o locale padrão (ex.: tr-TR) trocaria o "I"
+        key = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+        int valueStart = colon + 1;
+        while (valueStart < length && Character.isWhitespace(line.charAt(valueStart))) {
+            valueStart++;
+        }
+        value.append(line, valueStart, Math.max(valueStart, trimmedEnd(line)));
+    }
+
+    private static int trimmedEnd(String line) {
+        int end = line.length();
+        while (end > 0 && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Aplica a chave lida à coleção ou ao jogo atual
+     */
+    private void flush() {
+        if (key == null) {
+            return;
+        }
+        String lines = value.toString();
+        value.setLength(0);
+        String text = joinText(lines);
+
+        if ("collection".equals(key)) {
+            currentCollection = new Collection(text);
+            currentGame = null;
+            result.collections.add(currentCollection);
+        } else if ("game".equals(key)) {
+            currentGame = new GameEntry(text, currentCollection != null ? currentCollection.getName() : null);
+            result.games.add(currentGame);
+        } else if (currentGame != null) {
+            if ("file".equals(key) || "files".equals(key)) {
+                for (String file : lines.split("\n")) {
+                    if (!file.isEmpty() && !file.equals(".")) {
+                        currentGame.addFile(file);
+                    }
+                }
+            } else if (key.startsWith("assets.")) {
+                currentGame.putAsset(normalizeAssetKind(key.substring("assets.".length())), text);
+            }
+        } else if (currentCollection != null) {
+            currentCollection.properties.put(key, text);
+        }
+
+        key = null;
+    }
+
+    /**
+     * Junta as linhas de um valor de texto: continuações viram um espaço e
+     * uma linha só com "." vira uma quebra de parágrafo
+     */
+    private static String joinText(String lines) {
+        if (lines.indexOf('\n') < 0) {
+            return lines;
+        }
+        StringBuilder text = new StringBuilder(lines.length());
+        for (String line : lines.split("\n")) {
+            if (line.equals(".")) {
+                text.append('\n');
+            } else if (!line.isEmpty()) {
+                if (text.length() > 0 && text.charAt(text.length() - 1) != '\n') {
+                    text.append(' ');
+                }
+                text.append(line);
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Pegasus aceita "box_front", "boxFront" e "boxfront" para o mesmo asset
+     */
+    static String normalizeAssetKind(String kind) {
+        StringBuilder normalized = new StringBuilder(kind.length());
+        for (int i = 0; i < kind.length(); i++) {
+            char c = kind.charAt(i);
+            if (c != '_' && c != '-') {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        return normalized.toString();
+    }
+}
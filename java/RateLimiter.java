@@ -0,0 +1,123 @@
+package com.example.pegasusimagemanager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limitador de requisições por balde de fichas: o balde enche a uma taxa
+ * fixa até o limite da rajada, e cada tarefa gasta uma ficha. Tarefas sem
+ * ficha esperam na fila, na ordem em que chegaram. Uma pausa (por exemplo
+ * pedida pelo servidor com Retry-After) segura a fila inteira.
+ * As tarefas devem ser rápidas (só enfileirar a chamada de rede): rodam na
+ * thread de quem as liberou.
+ */
+public class RateLimiter {
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+
+    private double permitsPerSecond;
+    private int burst;
+    private double tokens;
+    private long lastRefillNanos = System.nanoTime();
+    private long pausedUntilNanos;
+    private boolean drainScheduled;
+
+    /**
+     * @param permitsPerSecond Taxa de reposição das fichas
+     * @param burst Máximo de fichas acumuladas (requisições seguidas sem espera)
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        setRate(permitsPerSecond, burst);
+        tokens = this.burst;
+    }
+
+    /**
+     * Muda a taxa e a rajada; vale para as tarefas já na fila
+     */
+    public synchronized void setRate(double permitsPerSecond, int burst) {
+        refill();
+        this.permitsPerSecond = Math.max(permitsPerSecond, 0.01);
+        this.burst = Math.max(burst, 1);
+        tokens = Math.min(tokens, this.burst);
+    }
+
+    /**
+     * Executa a tarefa assim que houver ficha
+     */
+    public void submit(Runnable task) {
+        synchronized (this) {
+            queue.add(task);
+        }
+        drain();
+    }
+
+    /**
+     * @return Tarefas esperando ficha, para quem gera muitas requisições
+     *         segurar as próximas
+     */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Segura a fila por um tempo, sem descartar tarefas
+     * @param millis Duração da pausa a partir de agora
+     */
+    public void pauseFor(long millis) {
+        synchronized (this) {
+            long until = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(millis);
+            if (until > pausedUntilNanos) {
+                pausedUntilNanos = until;
+                // Depois da pausa, recomeça devagar em vez de gastar a rajada de uma vez
+                tokens = 0;
+                lastRefillNanos = until;
+            }
+        }
+        drain();
+    }
+
+    private void drain() {
+        List<Runnable> ready = new ArrayList<>();
+        synchronized (this) {
+            drainScheduled = false;
+            refill();
+            long now = System.nanoTime();
+            while (!queue.isEmpty()) {
+                if (now < pausedUntilNanos) {
+                    scheduleDrain(pausedUntilNanos - now);
+                    break;
+                }
+                if (tokens < 1) {
+                    scheduleDrain((long) ((1 - tokens) / permitsPerSecond * TimeUnit.SECONDS.toNanos(1)));
+                    break;
+                }
+                tokens -= 1;
+                ready.add(queue.poll());
+            }
+        }
+        // Fora do lock: uma tarefa pode enfileirar outra
+        for (Runnable task : ready) {
+            task.run();
+        }
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (now > lastRefillNanos) {
+            double elapsedSeconds = (now - lastRefillNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            tokens = Math.min(burst, tokens + elapsedSeconds * permitsPerSecond);
+            lastRefillNanos = now;
+        }
+    }
+
+    private void scheduleDrain(long delayNanos) {
+        if (!drainScheduled) {
+            drainScheduled = true;
+            scheduler.schedule(this::drain, Math.max(delayNanos, 0), TimeUnit.NANOSECONDS);
+        }
+    }
+}
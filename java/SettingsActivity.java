@@ -1,21 +1,32 @@
 package com.example.pegasusimagemanager;
 
+import android.app.Activity;
 import android.content.Intent;
 import android.net.Uri;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.view.View;
+import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
 
 import com.google.android.material.appbar.MaterialToolbar;
 import com.google.android.material.button.MaterialButton;
+import com.google.android.material.materialswitch.MaterialSwitch;
+import com.google.android.material.slider.Slider;
 import com.google.android.material.textfield.TextInputEditText;
 import com.google.android.material.textfield.TextInputLayout;
 import com.google.android.material.textview.MaterialTextView;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.EnumSet;
+import java.util.Set;
+
 public class SettingsActivity extends AppCompatActivity {
     
     private TextInputLayout tilApiKey;
@@ -24,6 +35,13 @@ public class SettingsActivity extends AppCompatActivity {
     private MaterialButton btnGetApiKey;
     private MaterialButton btnTestConnection;
     private MaterialTextView tvStatus;
+    private TextView tvScanParallelism;
+    private Slider sliderScanParallelism;
+    private MaterialSwitch switchCreateMediaFolders;
+    private TextView tvMediaAssets;
+    private MaterialButton btnMediaAssets;
+    private ActivityResultLauncher<Intent> exportGameIdsLauncher;
+    private ActivityResultLauncher<Intent> importGameIdsLauncher;
     
     private SteamGridDbApi steamGridDbApi;
     private Handler mainHandler;
@@ -37,12 +55,13 @@ public class SettingsActivity extends AppCompatActivity {
         
         setContentView(R.layout.activity_settings);
         
+        steamGridDbApi = new SteamGridDbApi(this);
+        mainHandler = new Handler(Looper.getMainLooper());
+        
         initializeViews();
+        initializeActivityLaunchers();
         setupToolbar();
         loadCurrentSettings();
-        
-        steamGridDbApi = new SteamGridDbApi(this);
-        mainHandler = new Handler(Looper.getMainLooper());
     }
     
     private void initializeViews() {
@@ -52,10 +71,84 @@ public class SettingsActivity extends AppCompatActivity {
         btnGetApiKey = findViewById(R.id.btnGetApiKey);
         btnTestConnection = findViewById(R.id.btnTestConnection);
         tvStatus = findViewById(R.id.tvStatus);
+        tvScanParallelism = findViewById(R.id.tvScanParallelism);
+        sliderScanParallelism = findViewById(R.id.sliderScanParallelism);
+        switchCreateMediaFolders = findViewById(R.id.switchCreateMediaFolders);
+        tvMediaAssets = findViewById(R.id.tvMediaAssets);
+        btnMediaAssets = findViewById(R.id.btnMediaAssets);
         
         btnSave.setOnClickListener(v -> saveApiKey());
+        btnMediaAssets.setOnClickListener(v -> showMediaAssetsDialog());
+        findViewById(R.id.btnExportGameIds).setOnClickListener(v -> exportGameIds());
+        findViewById(R.id.btnImportGameIds).setOnClickListener(v -> importGameIds());
         btnGetApiKey.setOnClickListener(v -> openSteamGridDbWebsite());
         btnTestConnection.setOnClickListener(v -> testConnection());
+        
+        sliderScanParallelism.addOnChangeListener((slider, value, fromUser) -> {
+            tvScanParallelism.setText(getString(R.string.scan_parallelism_value, (int) value));
+            if (fromUser) {
+                ParallelDesktopParser.setParallelism(this, (int) value);
+            }
+        });
+        
+        switchCreateMediaFolders.setOnCheckedChangeListener((buttonView, isChecked) ->
+                MediaTreeIndex.setCreateOnScanEnabled(this, isChecked));
+    }
+    
+    private void initializeActivityLaunchers() {
+        // Arquivo escolhido para exportar os jogos escolhidos
+        exportGameIdsLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null
+                            && result.getData().getData() != null) {
+                        try {
+                            OutputStream output = getContentResolver().openOutputStream(result.getData().getData());
+                            if (output == null) {
+                                showTransferError("não foi possível abrir o arquivo");
+                                return;
+                            }
+                            GameIdStore.getInstance(this).exportTo(output, (count, error) -> {
+                                if (error != null) {
+                                    showTransferError(error);
+                                } else {
+                                    Toast.makeText(this, getString(R.string.game_ids_exported, count),
+                                            Toast.LENGTH_SHORT).show();
+                                }
+                            });
+                        } catch (Exception e) {
+                            showTransferError(e.getMessage());
+                        }
+                    }
+                }
+        );
+        
+        // Arquivo escolhido para importar
+        importGameIdsLauncher = registerForActivityResult(
+                new ActivityResultContracts.StartActivityForResult(),
+                result -> {
+                    if (result.getResultCode() == Activity.RESULT_OK && result.getData() != null
+                            && result.getData().getData() != null) {
+                        try {
+                            InputStream input = getContentResolver().openInputStream(result.getData().getData());
+                            if (input == null) {
+                                showTransferError("não foi possível abrir o arquivo");
+                                return;
+                            }
+                            GameIdStore.getInstance(this).importFrom(input, (count, error) -> {
+                                if (error != null) {
+                                    showTransferError(error);
+                                } else {
+                                    Toast.makeText(this, getString(R.string.game_ids_imported, count),
+                                            Toast.LENGTH_SHORT).show();
+                                }
+                            });
+                        } catch (Exception e) {
+                            showTransferError(e.getMessage());
+                        }
+                    }
+                }
+        );
     }
     
     private void setupToolbar() {
@@ -71,6 +164,12 @@ public class SettingsActivity extends AppCompatActivity {
     }
     
     private void loadCurrentSettings() {
+        int parallelism = ParallelDesktopParser.getParallelism(this);
+        sliderScanParallelism.setValue(parallelism);
+        tvScanParallelism.setText(getString(R.string.scan_parallelism_value, parallelism));
+        switchCreateMediaFolders.setChecked(MediaTreeIndex.isCreateOnScanEnabled(this));
+        updateMediaAssetsSummary();
+        
         String currentApiKey = steamGridDbApi.getApiKey();
         if (currentApiKey != null && !currentApiKey.isEmpty()) {
             etApiKey.setText(currentApiKey);
@@ -104,8 +203,8 @@ public class SettingsActivity extends AppCompatActivity {
         btnTestConnection.setEnabled(false);
         btnTestConnection.setText("Testando...");
         
-        // Faz uma busca simples para testar a conexão
-        steamGridDbApi.searchGames("test", new SteamGridDbApi.SearchCallback() {
+        // Faz uma busca simples, sem cache, para testar a conexão
+        steamGridDbApi.testConnection(new SteamGridDbApi.SearchCallback() {
             @Override
             public void onSuccess(java.util.List<SteamGridDbResponse.GameResult> games) {
                 mainHandler.post(() -> {
@@ -128,6 +227,69 @@ public class SettingsActivity extends AppCompatActivity {
         });
     }
     
+    /**
+     * Escolhe os tipos de mídia baixados junto com a capa na busca em lote
+     */
+    private void showMediaAssetsDialog() {
+        // A capa sempre é baixada e não aparece na lista
+        MediaAsset[] extras = EnumSet.complementOf(EnumSet.of(MediaAsset.BOX_FRONT)).toArray(new MediaAsset[0]);
+        Set<MediaAsset> selected = steamGridDbApi.getMediaAssets();
+        String[] labels = new String[extras.length];
+        boolean[] checked = new boolean[extras.length];
+        for (int i = 0; i < extras.length; i++) {
+            labels[i] = getString(extras[i].getLabelRes());
+            checked[i] = selected.contains(extras[i]);
+        }
+        
+        new android.app.AlertDialog.Builder(this)
+                .setTitle(R.string.media_assets_title)
+                .setMultiChoiceItems(labels, checked, (dialog, which, isChecked) -> checked[which] = isChecked)
+                .setPositiveButton(android.R.string.ok, (dialog, which) -> {
+                    Set<MediaAsset> assets = EnumSet.noneOf(MediaAsset.class);
+                    for (int i = 0; i < extras.length; i++) {
+                        if (checked[i]) {
+                            assets.add(extras[i]);
+                        }
+                    }
+                    steamGridDbApi.setMediaAssets(assets);
+                    updateMediaAssetsSummary();
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+    
+    private void updateMediaAssetsSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (MediaAsset asset : steamGridDbApi.getMediaAssets()) {
+            if (asset != MediaAsset.BOX_FRONT) {
+                summary.append(summary.length() > 0 ? ", " : "").append(getString(asset.getLabelRes()));
+            }
+        }
+        tvMediaAssets.setText(summary.length() > 0 ? summary.toString() : getString(R.string.media_assets_none));
+    }
+    
+    private void exportGameIds() {
+        Intent intent = new Intent(Intent.ACTION_CREATE_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        intent.setType("application/json");
+        intent.putExtra(Intent.EXTRA_TITLE, "steamgriddb_ids.json");
+        exportGameIdsLauncher.launch(intent);
+    }
+    
+    private void importGameIds() {
+        Intent intent = new Intent(Intent.ACTION_OPEN_DOCUMENT);
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+        // Alguns gerenciadores não marcam .json como application/json
+        intent.setType("*/*");
+        intent.putExtra(Intent.EXTRA_MIME_TYPES,
+                new String[]{"application/json", "text/plain", "application/octet-stream"});
+        importGameIdsLauncher.launch(intent);
+    }
+    
+    private void showTransferError(String error) {
+        Toast.makeText(this, getString(R.string.game_ids_transfer_failed, error), Toast.LENGTH_LONG).show();
+    }
+    
     private void openSteamGridDbWebsite() {
         Intent intent = new Intent(Intent.ACTION_VIEW);
         intent.setData(Uri.parse("https://www.steamgriddb.com/profile/preferences/api"));
@@ -4,13 +4,25 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.util.Log;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import okhttp3.CacheControl;
 import okhttp3.Call;
 import okhttp3.Callback;
 import okhttp3.OkHttpClient;
@@ -22,10 +34,38 @@ public class SteamGridDbApi {
     private static final String BASE_URL = "https://www.steamgriddb.com/api/v2";
     private static final String PREFS_NAME = "steamgriddb_prefs";
     private static final String API_KEY_PREF = "api_key";
+    private static final String MEDIA_ASSETS_PREF = "media_assets";
+    // Imagens por página de getGameGrids e getAssetImages
+    public static final int GRID_PAGE_SIZE = 20;
+    // Com o log de depuração ativo, só 1 a cada LOG_SAMPLE_RATE respostas é
+    // registrada, e só o começo do corpo
+    private static final int LOG_SAMPLE_RATE = 10;
+    private static final long MAX_LOGGED_BYTES = 2048;
     
+    // Limite padrão de chamadas à API, compartilhado por todas as telas
+    private static final double DEFAULT_REQUESTS_PER_SECOND = 4;
+    private static final int DEFAULT_BURST = 8;
+    // Novas tentativas após 429, 5xx ou falha de rede
+    private static final int MAX_RETRIES = 4;
+    private static final long BASE_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    // Retry-After maior que isso faz a chamada falhar em vez de esperar
+    private static final long MAX_RETRY_AFTER_MILLIS = 5 * 60_000;
+    
+    private static final CacheControl NO_STORE = new CacheControl.Builder().noStore().build();
+    private static final AtomicInteger responsesSeen = new AtomicInteger();
+    private static final RateLimiter limiter = new RateLimiter(DEFAULT_REQUESTS_PER_SECOND, DEFAULT_BURST);
+    private static final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor();
+    // Chamadas à API esperando a nova tentativa no retryScheduler
+    private static final AtomicInteger pendingRetries = new AtomicInteger();
+    // Chamadas em andamento por chave do cache, com quem espera pela resposta
+    private static final Map<String, List<ResponseHandler<?>>> inFlight = new HashMap<>();
+    
+    // Compartilhado por todas as instâncias (HttpClientProvider)
     private final OkHttpClient client;
-    private final Gson gson;
+    private final SteamGridDbCache cache;
     private final SharedPreferences prefs;
+    private final Context context;
     
     public interface SearchCallback {
         void onSuccess(List<SteamGridDbResponse.GameResult> games);
@@ -37,13 +77,21 @@ public class SteamGridDbApi {
         void onError(String error);
     }
     
+    public interface AssetsCallback {
+        /**
+         * Chamado uma vez, quando todos os tipos pedidos responderam
+         * @param assets Imagens de cada tipo encontrado, na ordem da API (a
+         *               primeira é a mais bem avaliada)
+         * @param errors Erro de cada tipo que falhou
+         */
+        void onComplete(Map<MediaAsset, List<SteamGridDbResponse.GridResult>> assets,
+                        Map<MediaAsset, String> errors);
+    }
+    
     public SteamGridDbApi(Context context) {
-        client = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)
-                .readTimeout(30, TimeUnit.SECONDS)
-                .build();
-        
-        gson = new GsonBuilder().create();
+        client = HttpClientProvider.getClient(context);
+        this.context = context.getApplicationContext();
+        cache = SteamGridDbCache.getInstance(context);
         prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
     }
     
@@ -60,105 +108,446 @@ public class SteamGridDbApi {
         return apiKey != null && !apiKey.trim().isEmpty();
     }
     
+    /**
+     * @return Tipos de mídia baixados junto com a capa; a capa (BOX_FRONT)
+     *         está sempre incluída
+     */
+    public Set<MediaAsset> getMediaAssets() {
+        Set<MediaAsset> assets = EnumSet.of(MediaAsset.BOX_FRONT);
+        for (String name : prefs.getStringSet(MEDIA_ASSETS_PREF, Collections.emptySet())) {
+            try {
+                assets.add(MediaAsset.valueOf(name));
+            } catch (IllegalArgumentException e) {
+                // Tipo de uma versão anterior que não existe mais
+            }
+        }
+        return assets;
+    }
+    
+    public void setMediaAssets(Set<MediaAsset> assets) {
+        Set<String> names = new HashSet<>();
+        for (MediaAsset asset : assets) {
+            names.add(asset.name());
+        }
+        prefs.edit().putStringSet(MEDIA_ASSETS_PREF, names).apply();
+    }
+    
+    /**
+     * @return Chamadas à API esperando vez no limitador ou esperando uma nova
+     *         tentativa. Quem gera muitas chamadas (ex.: CoverBatchJob) deve
+     *         esperar a fila baixar.
+     */
+    public static int getQueuedRequests() {
+        return limiter.getQueueDepth() + pendingRetries.get();
+    }
+    
+    /**
+     * Abre a conexão com a API em segundo plano, para que a primeira busca
+     * depois de abrir o app não espere pelo handshake TLS
+     */
+    public void warmUp() {
+        HttpClientProvider.warmUp(context, BASE_URL);
+    }
+    
     public void searchGames(String gameName, SearchCallback callback) {
         if (!hasApiKey()) {
             callback.onError("API Key não configurada");
             return;
         }
         
-        String url = BASE_URL + "/search/autocomplete/" + gameName;
+        load(searchKey(gameName), searchUrl(gameName), SteamGridDbJson.SEARCH_RESPONSE, "Resposta da busca",
+                searchHandler(callback));
+    }
+    
+    /**
+     * Procura entre os resultados da busca o jogo com o mesmo nome, sem
+     * diferença de acentos, maiúsculas ou espaços; entre vários iguais, um
+     * verificado
+     * @param gameName Nome buscado
+     * @param results Resultados da busca
+     * @return Jogo com o mesmo nome ou null se nenhum é igual
+     */
+    public static SteamGridDbResponse.GameResult findExactMatch(String gameName,
+                                                                List<SteamGridDbResponse.GameResult> results) {
+        String target = SteamGridDbCache.normalizeQuery(gameName);
+        SteamGridDbResponse.GameResult exact = null;
+        for (SteamGridDbResponse.GameResult result : results) {
+            if (target.equals(SteamGridDbCache.normalizeQuery(result.getName()))
+                    && (exact == null || (result.isVerified() && !exact.isVerified()))) {
+                exact = result;
+            }
+        }
+        return exact;
+    }
+    
+    /**
+     * Testa a API Key com uma busca feita sempre na rede: uma resposta em
+     * cache não diria nada sobre a chave atual
+     */
+    public void testConnection(SearchCallback callback) {
+        if (!hasApiKey()) {
+            callback.onError("API Key não configurada");
+            return;
+        }
         
-        Request request = new Request.Builder()
-                .url(url)
-                .addHeader("Authorization", "Bearer " + getApiKey())
-                .build();
+        fetch(searchKey("test"), searchUrl("test"), SteamGridDbJson.SEARCH_RESPONSE, "Teste de conexão",
+                searchHandler(callback));
+    }
+    
+    private static String searchUrl(String gameName) {
+        return BASE_URL + "/search/autocomplete/" + gameName;
+    }
+    
+    private static String searchKey(String gameName) {
+        return "search:" + SteamGridDbCache.normalizeQuery(gameName);
+    }
+    
+    private static ResponseHandler<SteamGridDbResponse> searchHandler(SearchCallback callback) {
+        return new ResponseHandler<SteamGridDbResponse>() {
+            @Override
+            public void onResponse(SteamGridDbResponse searchResponse) {
+                if (searchResponse.isSuccess() && searchResponse.getData() != null) {
+                    callback.onSuccess(searchResponse.getData());
+                } else {
+                    callback.onError("Nenhum jogo encontrado");
+                }
+            }
+            
+            @Override
+            public void onError(String error) {
+                callback.onError(error);
+            }
+        };
+    }
+    
+    /**
+     * Busca uma página das capas de um jogo, com até GRID_PAGE_SIZE capas;
+     * uma página menor (ou vazia) é a última
+     * @param gameId ID do jogo na SteamGridDB
+     * @param page Índice da página, a partir de 0
+     * @param callback Recebe as capas da página
+     */
+    public void getGameGrids(int gameId, int page, GridCallback callback) {
+        getAssetImages(gameId, MediaAsset.BOX_FRONT, page, callback);
+    }
+    
+    /**
+     * Busca uma página das imagens de um tipo de mídia de um jogo
+     * @param gameId ID do jogo na SteamGridDB
+     * @param asset Tipo de mídia, que define o endpoint e os filtros
+     * @param page Índice da página, a partir de 0
+     * @param callback Recebe as imagens da página
+     */
+    public void getAssetImages(int gameId, MediaAsset asset, int page, GridCallback callback) {
+        if (!hasApiKey()) {
+            callback.onError("API Key não configurada");
+            return;
+        }
+        
+        String params = asset.getParams() + "&limit=" + GRID_PAGE_SIZE + "&page=" + page;
+        String url = BASE_URL + "/" + asset.getEndpoint() + "/game/" + gameId + "?" + params;
+        String key = asset.getEndpoint() + ":" + gameId + "?" + params;
+        String notFound = asset == MediaAsset.BOX_FRONT ? "Nenhuma capa encontrada" : "Nenhuma imagem encontrada";
         
-        client.newCall(request).enqueue(new Callback() {
+        load(key, url, SteamGridDbJson.GRID_RESPONSE, "Resposta de " + asset.getEndpoint(),
+                new ResponseHandler<SteamGridDbResponse.GridResponse>() {
             @Override
-            public void onFailure(Call call, IOException e) {
-                Log.e(TAG, "Erro na busca: " + e.getMessage());
-                callback.onError("Erro de conexão: " + e.getMessage());
+            public void onResponse(SteamGridDbResponse.GridResponse gridResponse) {
+                if (gridResponse.isSuccess() && gridResponse.getData() != null) {
+                    callback.onSuccess(gridResponse.getData());
+                } else {
+                    callback.onError(notFound);
+                }
             }
             
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (!response.isSuccessful()) {
-                    Log.e(TAG, "Resposta não bem-sucedida: " + response.code());
-                    callback.onError("Erro do servidor: " + response.code());
-                    return;
+            public void onError(String error) {
+                callback.onError(error);
+            }
+        });
+    }
+    
+    /**
+     * Busca vários tipos de mídia de um jogo ao mesmo tempo, a partir do
+     * mesmo ID: as chamadas saem juntas (respeitando o limitador), então o
+     * conjunto custa o tempo da mais lenta, não a soma de todas
+     * @param gameId ID do jogo na SteamGridDB
+     * @param assets Tipos a buscar
+     * @param callback Recebe todos os resultados de uma vez
+     */
+    public void getGameAssets(int gameId, Set<MediaAsset> assets, AssetsCallback callback) {
+        Map<MediaAsset, List<SteamGridDbResponse.GridResult>> found =
+                Collections.synchronizedMap(new EnumMap<>(MediaAsset.class));
+        Map<MediaAsset, String> errors = Collections.synchronizedMap(new EnumMap<>(MediaAsset.class));
+        if (assets.isEmpty()) {
+            callback.onComplete(found, errors);
+            return;
+        }
+        
+        AtomicInteger pending = new AtomicInteger(assets.size());
+        for (MediaAsset asset : assets) {
+            getAssetImages(gameId, asset, 0, new GridCallback() {
+                @Override
+                public void onSuccess(List<SteamGridDbResponse.GridResult> images) {
+                    found.put(asset, images);
+                    if (pending.decrementAndGet() == 0) {
+                        callback.onComplete(found, errors);
+                    }
                 }
                 
-                try {
-                    String responseBody = response.body().string();
-                    Log.d(TAG, "Resposta da busca: " + responseBody);
-                    
-                    SteamGridDbResponse searchResponse = gson.fromJson(responseBody, SteamGridDbResponse.class);
-                    
-                    if (searchResponse.isSuccess() && searchResponse.getData() != null) {
-                        callback.onSuccess(searchResponse.getData());
-                    } else {
-                        callback.onError("Nenhum jogo encontrado");
+                @Override
+                public void onError(String error) {
+                    errors.put(asset, error);
+                    if (pending.decrementAndGet() == 0) {
+                        callback.onComplete(found, errors);
                     }
-                } catch (Exception e) {
-                    Log.e(TAG, "Erro ao processar resposta: " + e.getMessage());
-                    callback.onError("Erro ao processar resposta");
                 }
+            });
+        }
+    }
+    
+    /**
+     * Resultado de uma requisição à API, entregue fora da thread principal
+     */
+    private interface ResponseHandler<T> {
+        void onResponse(T response);
+        void onError(String error);
+    }
+    
+    /**
+     * Entrega a resposta do cache quando existe. Uma entrada vencida ainda é
+     * entregue na hora e a versão nova é buscada em segundo plano, ficando
+     * pronta para a próxima visita; sem entrada, busca na rede.
+     * @param key Chave do cache (consulta normalizada ou ID + parâmetros)
+     * @param url Endereço da requisição
+     * @param reader Leitor do modelo (SteamGridDbJson)
+     * @param label Descrição usada no log
+     * @param handler Recebe o modelo ou o erro
+     */
+    private <T> void load(String key, String url, SteamGridDbJson.ModelReader<T> reader, String label,
+                          ResponseHandler<T> handler) {
+        cache.get(key, reader, (cached, stale) -> {
+            if (cached == null) {
+                fetch(key, url, reader, label, handler);
+                return;
+            }
+            handler.onResponse(cached);
+            if (stale) {
+                fetch(key, url, reader, label, null);
             }
         });
     }
     
-    public void getGameGrids(int gameId, GridCallback callback) {
-        if (!hasApiKey()) {
-            callback.onError("API Key não configurada");
-            return;
+    /**
+     * Busca na rede e grava a resposta no cache. Pedidos com a mesma chave
+     * e a mesma API Key feitos enquanto a chamada está em andamento entram
+     * nela em vez de abrir outra: a resposta é baixada e lida uma vez só e
+     * entregue a todos.
+     * @param handler Recebe o modelo ou o erro; null numa revalidação em segundo plano
+     */
+    private <T> void fetch(String key, String url, SteamGridDbJson.ModelReader<T> reader, String label,
+                           ResponseHandler<T> handler) {
+        // A chamada vale para uma API Key: logo depois de trocar a chave, um
+        // pedido não pode entrar numa chamada feita com a anterior
+        String apiKey = getApiKey();
+        String flightKey = key + '\n' + apiKey;
+        synchronized (inFlight) {
+            List<ResponseHandler<?>> waiting = inFlight.get(flightKey);
+            if (waiting != null) {
+                if (handler != null) {
+                    waiting.add(handler);
+                }
+                return;
+            }
+            waiting = new ArrayList<>();
+            if (handler != null) {
+                waiting.add(handler);
+            }
+            inFlight.put(flightKey, waiting);
         }
         
-        String url = BASE_URL + "/grids/game/" + gameId + "?dimensions=600x900&types=static&limit=20";
-        
+        // A resposta já vai para o SteamGridDbCache: no cache do OkHttp ficaria duplicada
         Request request = new Request.Builder()
                 .url(url)
-                .addHeader("Authorization", "Bearer " + getApiKey())
+                .addHeader("Authorization", "Bearer " + apiKey)
+                .cacheControl(NO_STORE)
                 .build();
         
-        client.newCall(request).enqueue(new Callback() {
+        enqueue(request, true, new Callback() {
             @Override
             public void onFailure(Call call, IOException e) {
-                Log.e(TAG, "Erro ao buscar grids: " + e.getMessage());
-                callback.onError("Erro de conexão: " + e.getMessage());
+                Log.e(TAG, label + ": erro de conexão: " + e.getMessage());
+                fail(flightKey, "Erro de conexão: " + e.getMessage());
             }
             
             @Override
-            public void onResponse(Call call, Response response) throws IOException {
-                if (!response.isSuccessful()) {
-                    Log.e(TAG, "Resposta não bem-sucedida: " + response.code());
-                    callback.onError("Erro do servidor: " + response.code());
-                    return;
-                }
-                
-                try {
-                    String responseBody = response.body().string();
-                    Log.d(TAG, "Resposta dos grids: " + responseBody);
-                    
-                    SteamGridDbResponse.GridResponse gridResponse = gson.fromJson(responseBody, SteamGridDbResponse.GridResponse.class);
-                    
-                    if (gridResponse.isSuccess() && gridResponse.getData() != null) {
-                        callback.onSuccess(gridResponse.getData());
-                    } else {
-                        callback.onError("Nenhuma capa encontrada");
+            public void onResponse(Call call, Response response) {
+                T result;
+                try (Response closeable = response) {
+                    if (!closeable.isSuccessful()) {
+                        Log.e(TAG, "Resposta não bem-sucedida: " + closeable.code());
+                        fail(flightKey, "Erro do servidor: " + closeable.code());
+                        return;
                     }
+                    
+                    logBody(closeable, label);
+                    // O corpo vai do fluxo para o disco e é lido do arquivo, sem
+                    // montar uma String com o JSON inteiro
+                    result = cache.put(key, closeable.body().byteStream(), reader);
                 } catch (Exception e) {
-                    Log.e(TAG, "Erro ao processar grids: " + e.getMessage());
-                    callback.onError("Erro ao processar resposta");
+                    Log.e(TAG, "Erro ao processar resposta: " + e.getMessage());
+                    fail(flightKey, "Erro ao processar resposta");
+                    return;
                 }
+                succeed(flightKey, result);
             }
         });
     }
     
+    /**
+     * @return Quem esperava pela chamada da chave, que deixa de estar em andamento
+     */
+    private static List<ResponseHandler<?>> takeWaiting(String key) {
+        synchronized (inFlight) {
+            List<ResponseHandler<?>> waiting = inFlight.remove(key);
+            return waiting != null ? waiting : new ArrayList<>();
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> void succeed(String key, T result) {
+        // A chave define o modelo: todos os que esperam pediram o mesmo tipo
+        for (ResponseHandler<?> handler : takeWaiting(key)) {
+            ((ResponseHandler<T>) handler).onResponse(result);
+        }
+    }
+    
+    private static void fail(String key, String error) {
+        for (ResponseHandler<?> handler : takeWaiting(key)) {
+            handler.onError(error);
+        }
+    }
+    
+    /**
+     * Registra o começo do corpo de uma amostra das respostas. Desligado por
+     * padrão; ative com "adb shell setprop log.tag.SteamGridDbApi DEBUG".
+     */
+    private static void logBody(Response response, String label) throws IOException {
+        if (Log.isLoggable(TAG, Log.DEBUG) && responsesSeen.getAndIncrement() % LOG_SAMPLE_RATE == 0) {
+            // peekBody copia só o começo, sem consumir o fluxo
+            Log.d(TAG, label + ": " + response.peekBody(MAX_LOGGED_BYTES).string());
+        }
+    }
+    
     public void downloadImage(String imageUrl, Callback callback) {
         Request request = new Request.Builder()
                 .url(imageUrl)
                 .build();
         
-        client.newCall(request).enqueue(callback);
+        // O download vem da CDN: sem limitador, mas com novas tentativas
+        enqueue(request, false, callback);
+    }
+    
+    /**
+     * Envia uma requisição, passando pelo limitador quando é da API. Respostas
+     * 429 e 5xx e falhas de rede são repetidas com espera exponencial com
+     * variação aleatória, nunca menor que o tempo pedido no Retry-After; o
+     * callback só recebe o resultado final. Um Retry-After acima de
+     * MAX_RETRY_AFTER_MILLIS encerra a chamada com a própria resposta e
+     * pausa o limitador só até esse teto.
+     * @param limited true para chamadas à API, que contam no limite
+     */
+    private void enqueue(Request request, boolean limited, Callback callback) {
+        enqueue(request, limited, callback, 0);
+    }
+    
+    private void enqueue(Request request, boolean limited, Callback callback, int attempt) {
+        Runnable send = () -> client.newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (!call.isCanceled() && attempt < MAX_RETRIES) {
+                    long delay = backoff(attempt);
+                    Log.w(TAG, "Falha de rede, nova tentativa em " + delay + " ms: " + e.getMessage());
+                    retry(request, limited, callback, attempt, delay);
+                    return;
+                }
+                callback.onFailure(call, e);
+            }
+            
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                int code = response.code();
+                if ((code == 429 || code >= 500) && attempt < MAX_RETRIES) {
+                    long retryAfter = retryAfter(response);
+                    if (retryAfter > MAX_RETRY_AFTER_MILLIS) {
+                        // Segurar a fila pelo tempo todo travaria a busca manual
+                        // sem aviso; a pausa fica no teto e só esta chamada falha
+                        if (code == 429 && limited) {
+                            limiter.pauseFor(MAX_RETRY_AFTER_MILLIS);
+                        }
+                        Log.w(TAG, "Resposta " + code + " com Retry-After de " + retryAfter + " ms, sem nova tentativa");
+                        callback.onResponse(call, response);
+                        return;
+                    }
+                    long delay = Math.max(retryAfter, backoff(attempt));
+                    if (code == 429 && limited) {
+                        // O servidor pediu calma: segura todas as chamadas, não só esta
+                        limiter.pauseFor(delay);
+                    }
+                    response.close();
+                    Log.w(TAG, "Resposta " + code + ", nova tentativa em " + delay + " ms");
+                    retry(request, limited, callback, attempt, delay);
+                    return;
+                }
+                callback.onResponse(call, response);
+            }
+        });
+        
+        if (limited) {
+            limiter.submit(send);
+        } else {
+            send.run();
+        }
+    }
+    
+    private void retry(Request request, boolean limited, Callback callback, int attempt, long delayMillis) {
+        if (limited) {
+            pendingRetries.incrementAndGet();
+        }
+        retryScheduler.schedule(() -> {
+            if (limited) {
+                pendingRetries.decrementAndGet();
+            }
+            enqueue(request, limited, callback, attempt + 1);
+        }, delayMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * @return Espera pedida no Retry-After (em segundos ou como data) ou 0
+     *         sem o cabeçalho
+     */
+    private static long retryAfter(Response response) {
+        String retryAfter = response.header("Retry-After");
+        if (retryAfter != null) {
+            try {
+                return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.trim())));
+            } catch (NumberFormatException e) {
+                Date date = response.headers().getDate("Retry-After");
+                if (date != null) {
+                    return Math.max(0, date.getTime() - System.currentTimeMillis());
+                }
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * Espera exponencial com variação aleatória: entre metade e o total de
+     * BASE_BACKOFF_MILLIS * 2^tentativa, para que chamadas que falharam juntas
+     * não voltem juntas
+     */
+    private static long backoff(int attempt) {
+        long delay = Math.min(BASE_BACKOFF_MILLIS << attempt, MAX_BACKOFF_MILLIS);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
     }
 }
\ No newline at end of file
@@ -0,0 +1,258 @@
+package com.example.pegasusimagemanager;
+
+import android.content.Context;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache em dois níveis das respostas da SteamGridDB: os modelos já lidos
+ * ficam num LRU em memória e o JSON original fica num arquivo na pasta de
+ * cache do app, para sobreviver ao fechamento do app.
+ * Uma entrada é fresca até o TTL; depois, durante a janela de
+ * stale-while-revalidate, ainda é entregue na hora, mas o chamador deve
+ * buscar a versão nova em segundo plano. Passada a janela, é ignorada.
+ * Os arquivos vencidos são apagados ao abrir o cache, e o disco tem um
+ * limite de tamanho: passado o limite, saem primeiro as respostas mais
+ * antigas. Por isso estas respostas não passam pelo cache do OkHttp.
+ */
+public class SteamGridDbCache {
+    private static final String TAG = "SteamGridDbCache";
+    private static final String CACHE_DIRECTORY = "steamgriddb";
+    private static final int MEMORY_ENTRIES = 64;
+    private static final long TTL = TimeUnit.DAYS.toMillis(1);
+    private static final long STALE_WINDOW = TimeUnit.DAYS.toMillis(7);
+    private static final long MAX_DISK_BYTES = 10L * 1024 * 1024;
+
+    private static SteamGridDbCache instance;
+
+    private final File directory;
+    private final LruCache<String, Entry> memory = new LruCache<>(MEMORY_ENTRIES);
+    // Leituras e gravações em disco, fora da thread principal
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    // Tamanho dos arquivos em disco, somado em trim() e a cada put()
+    private final AtomicLong diskBytes = new AtomicLong();
+    private final AtomicBoolean trimScheduled = new AtomicBoolean();
+
+    /**
+     * Resposta da consulta ao cache
+     */
+    public interface Lookup<T> {
+        /**
+         * @param value Modelo em cache ou null se não há entrada utilizável
+         * @param stale true se a entrada passou do TTL e deve ser revalidada
+         */
+        void onResult(T value, boolean stale);
+    }
+
+    private static class Entry {
+        final Object value;
+        final long storedAt;
+
+        Entry(Object value, long storedAt) {
+            this.value = value;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private SteamGridDbCache(Context context) {
+        directory = new File(context.getCacheDir(), CACHE_DIRECTORY);
+        trimScheduled.set(true);
+        executor.execute(this::trim);
+    }
+
+    public static synchronized SteamGridDbCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new SteamGridDbCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Normaliza o texto de uma busca para a chave do cache, para que
+     * variações de acento, maiúsculas e espaços caiam na mesma entrada
+     * @param query Texto buscado
+     * @return Texto normalizado
+     */
+    public static String normalizeQuery(String query) {
+        return GameSearchIndex.normalize(query).trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Procura uma entrada: primeiro na memória (resposta imediata, na thread
+     * do chamador) e depois em disco (resposta na thread do cache)
+     * @param key Chave da requisição
+     * @param reader Leitor do modelo, usado quando a entrada vem do disco
+     * @param lookup Recebe o resultado
+     */
+    @SuppressWarnings("unchecked")
+    public <T> void get(String key, SteamGridDbJson.ModelReader<T> reader, Lookup<T> lookup) {
+        Entry entry = memory.get(key);
+        if (entry != null && isUsable(entry.storedAt)) {
+            lookup.onResult((T) entry.value, isStale(entry.storedAt));
+            return;
+        }
+
+        executor.execute(() -> {
+            File file = fileFor(key);
+            long storedAt = file.lastModified();
+            if (storedAt == 0 || !isUsable(storedAt)) {
+                lookup.onResult(null, false);
+                return;
+            }
+            T value;
+            try {
+                value = read(file, reader);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "Entrada ilegível descartada: " + e.getMessage());
+                file.delete();
+                lookup.onResult(null, false);
+                return;
+            }
+            memory.put(key, new Entry(value, storedAt));
+            lookup.onResult(value, isStale(storedAt));
+        });
+    }
+
+    /**
+     * Grava o corpo de uma resposta direto do fluxo para o disco e lê o
+     * modelo do arquivo gravado. Deve ser chamado fora da thread principal.
+     * @param key Chave da requisição
+     * @param body Corpo da resposta; não é fechado aqui
+     * @param reader Leitor do modelo
+     * @return Modelo lido
+     */
+    public <T> T put(String key, InputStream body, SteamGridDbJson.ModelReader<T> reader) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Não foi possível criar " + directory);
+        }
+        File file = fileFor(key);
+        // Arquivo temporário próprio: duas respostas da mesma chave podem chegar juntas
+        File temp = File.createTempFile(file.getName(), ".tmp", directory);
+        try (OutputStream out = new FileOutputStream(temp)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        T value;
+        try {
+            value = read(temp, reader);
+        } catch (IOException | RuntimeException e) {
+            temp.delete();
+            throw e;
+        }
+        long size = temp.length();
+        if (temp.renameTo(file)) {
+            // Uma entrada substituída fica contada até o próximo trim()
+            if (diskBytes.addAndGet(size) > MAX_DISK_BYTES && trimScheduled.compareAndSet(false, true)) {
+                executor.execute(this::trim);
+            }
+        } else {
+            temp.delete();
+        }
+        memory.put(key, new Entry(value, System.currentTimeMillis()));
+        return value;
+    }
+
+    /**
+     * Apaga os arquivos vencidos e os temporários que sobraram, e depois os
+     * mais antigos até o disco caber no limite. Roda na thread do cache.
+     */
+    private void trim() {
+        trimScheduled.set(false);
+        File[] files = directory.listFiles();
+        if (files == null) {
+            diskBytes.set(0);
+            return;
+        }
+        List<File> kept = new ArrayList<>(files.length);
+        long total = 0;
+        int deleted = 0;
+        for (File file : files) {
+            boolean json = file.getName().endsWith(".json");
+            // Um .tmp recente pode ser de um put() em andamento
+            boolean expired = json ? !isUsable(file.lastModified()) : isStale(file.lastModified());
+            if (expired) {
+                if (file.delete()) {
+                    deleted++;
+                }
+            } else if (json) {
+                kept.add(file);
+                total += file.length();
+            }
+        }
+        if (total > MAX_DISK_BYTES) {
+            Collections.sort(kept, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+            for (File file : kept) {
+                if (total <= MAX_DISK_BYTES) {
+                    break;
+                }
+                long size = file.length();
+                if (file.delete()) {
+                    total -= size;
+                    deleted++;
+                }
+            }
+        }
+        diskBytes.set(total);
+        if (deleted > 0 && Log.isLoggable(TAG, Log.DEBUG)) {
+            Log.d(TAG, deleted + " arquivos apagados, " + total + " bytes em disco");
+        }
+    }
+
+    private boolean isUsable(long storedAt) {
+        return System.currentTimeMillis() - storedAt < TTL + STALE_WINDOW;
+    }
+
+    private boolean isStale(long storedAt) {
+        return System.currentTimeMillis() - storedAt >= TTL;
+    }
+
+    private static <T> T read(File file, SteamGridDbJson.ModelReader<T> reader) throws IOException {
+        try (Reader input = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            return reader.read(new JsonReader(input));
+        }
+    }
+
+    private File fileFor(String key) {
+        return new File(directory, hash(key) + ".json");
+    }
+
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 sempre existe no Android
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.pegasusimagemanager;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leitores das respostas da SteamGridDB. Cada modelo tem um ModelReader
+ * escrito à mão que lê direto do fluxo da resposta, campo a campo, sem
+ * montar o corpo inteiro numa String e sem reflexão. Campos desconhecidos
+ * são ignorados, então novos campos da API não quebram a leitura.
+ */
+public final class SteamGridDbJson {
+    public static final ModelReader<SteamGridDbResponse> SEARCH_RESPONSE = new ModelReader<SteamGridDbResponse>() {
+        @Override
+        public SteamGridDbResponse read(JsonReader in) throws IOException {
+            SteamGridDbResponse response = new SteamGridDbResponse();
+            if (beginObject(in)) {
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "success":
+                            response.setSuccess(readBoolean(in));
+                            break;
+                        case "data":
+                            response.setData(readList(in, GAME_RESULT));
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+            }
+            return response;
+        }
+    };
+
+    public static final ModelReader<SteamGridDbResponse.GridResponse> GRID_RESPONSE =
+            new ModelReader<SteamGridDbResponse.GridResponse>() {
+        @Override
+        public SteamGridDbResponse.GridResponse read(JsonReader in) throws IOException {
+            SteamGridDbResponse.GridResponse response = new SteamGridDbResponse.GridResponse();
+            if (beginObject(in)) {
+                while (in.hasNext()) {
+                    switch (in.nextName()) {
+                        case "success":
+                            response.setSuccess(readBoolean(in));
+                            break;
+                        case "data":
+                            response.setData(readList(in, GRID_RESULT));
+                            break;
+                        default:
+                            in.skipValue();
+                    }
+                }
+                in.endObject();
+            }
+            return response;
+        }
+    };
+
+    private static final ModelReader<SteamGridDbResponse.GameResult> GAME_RESULT =
+            new ModelReader<SteamGridDbResponse.GameResult>() {
+        @Override
+        public SteamGridDbResponse.GameResult read(JsonReader in) throws IOException {
+            if (!beginObject(in)) {
+                return null;
+            }
+            SteamGridDbResponse.GameResult game = new SteamGridDbResponse.GameResult();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        game.setId(readInt(in));
+                        break;
+                    case "name":
+                        game.setName(readString(in));
+                        break;
+                    case "types":
+                        game.setTypes(readList(in, STRING));
+                        break;
+                    case "verified":
+                        game.setVerified(readBoolean(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return game;
+        }
+    };
+
+    private static final ModelReader<SteamGridDbResponse.GridResult> GRID_RESULT =
+            new ModelReader<SteamGridDbResponse.GridResult>() {
+        @Override
+        public SteamGridDbResponse.GridResult read(JsonReader in) throws IOException {
+            if (!beginObject(in)) {
+                return null;
+            }
+            SteamGridDbResponse.GridResult grid = new SteamGridDbResponse.GridResult();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id":
+                        grid.setId(readInt(in));
+                        break;
+                    case "url":
+                        grid.setUrl(readString(in));
+                        break;
+                    case "thumb":
+                        grid.setThumb(readString(in));
+                        break;
+                    case "tags":
+                        grid.setTags(readList(in, STRING));
+                        break;
+                    case "author":
+                        grid.setAuthor(AUTHOR.read(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return grid;
+        }
+    };
+
+    private static final ModelReader<SteamGridDbResponse.GridResult.Author> AUTHOR =
+            new ModelReader<SteamGridDbResponse.GridResult.Author>() {
+        @Override
+        public SteamGridDbResponse.GridResult.Author read(JsonReader in) throws IOException {
+            if (!beginObject(in)) {
+                return null;
+            }
+            SteamGridDbResponse.GridResult.Author author = new SteamGridDbResponse.GridResult.Author();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "name":
+                        author.setName(readString(in));
+                        break;
+                    case "steam64":
+                        author.setSteam64(readString(in));
+                        break;
+                    case "avatar":
+                        author.setAvatar(readString(in));
+                        break;
+                    default:
+                        in.skipValue();
+                }
+            }
+            in.endObject();
+            return author;
+        }
+    };
+
+    private static final ModelReader<String> STRING = new ModelReader<String>() {
+        @Override
+        public String read(JsonReader in) throws IOException {
+            return readString(in);
+        }
+    };
+
+    private SteamGridDbJson() {
+    }
+
+    /**
+     * Lê um modelo do fluxo. Os modelos só são lidos da API, nunca enviados,
+     * então não há o lado da escrita de um TypeAdapter.
+     */
+    public interface ModelReader<T> {
+        /**
+         * @param in Fluxo posicionado no valor do modelo
+         * @return Modelo lido ou null se o valor era null
+         */
+        T read(JsonReader in) throws IOException;
+    }
+
+    /**
+     * @return true se abriu um objeto; false se o valor era null
+     */
+    private static boolean beginObject(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return false;
+        }
+        in.beginObject();
+        return true;
+    }
+
+    private static <T> List<T> readList(JsonReader in, ModelReader<T> element) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        List<T> list = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            T value = element.read(in);
+            if (value != null) {
+                list.add(value);
+            }
+        }
+        in.endArray();
+        return list;
+    }
+
+    private static String readString(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        // Números (ex.: steam64) também são aceitos como texto
+        return in.nextString();
+    }
+
+    private static int readInt(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return 0;
+        }
+        return in.nextInt();
+    }
+
+    private static boolean readBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return false;
+        }
+        return in.nextBoolean();
+    }
+}